@@ -5,6 +5,7 @@ import org.deeplearning4j.nn.graph.ComputationGraph;
 import src.board.Bitboard;
 import src.board.Board;
 import src.board.BoardDisplay;
+import src.board.Moves;
 import src.eval.*;
 import src.piece.Bishop;
 import src.piece.King;
@@ -19,8 +20,6 @@ import src.player.SmartPlayer;
 
 public class Game
 {
-    public static King wKing, bKing;
-    public static Rook wRookKing, wRookQueen, bRookKing, bRookQueen;
     static final boolean train = false;
     /**
      * The main method of the chess game that sets up the chess board and the two players.
@@ -39,10 +38,8 @@ public class Game
         blackQueen.putSelfInGrid(board, new Location(0, 3));
         Piece blackRookOne = new Rook(Color.BLACK, "./img/black_rook.gif");
         blackRookOne.putSelfInGrid(board, new Location(0, 0));
-        bRookQueen = (Rook) blackRookOne;
         Piece blackRookTwo = new Rook(Color.BLACK, "./img/black_rook.gif");
         blackRookTwo.putSelfInGrid(board, new Location(0, 7));
-        bRookKing = (Rook) blackRookTwo;
         Piece blackKnightOne = new Knight(Color.BLACK, "./img/black_knight.gif");
         blackKnightOne.putSelfInGrid(board, new Location(0, 1));
         Piece blackKnightTwo = new Knight(Color.BLACK, "./img/black_knight.gif");
@@ -63,10 +60,8 @@ public class Game
         whiteQueen.putSelfInGrid(board, new Location(7, 3));
         Piece whiteRookOne = new Rook(Color.WHITE, "./img/white_rook.gif");
         whiteRookOne.putSelfInGrid(board, new Location(7, 0));
-        wRookQueen = (Rook) whiteRookOne;
         Piece whiteRookTwo = new Rook(Color.WHITE, "./img/white_rook.gif");
         whiteRookTwo.putSelfInGrid(board, new Location(7, 7));
-        wRookKing = (Rook) whiteRookTwo;
         Piece whiteKnightOne = new Knight(Color.WHITE, "./img/white_knight.gif");
         whiteKnightOne.putSelfInGrid(board, new Location(7, 1));
         Piece whiteKnightTwo = new Knight(Color.WHITE, "./img/white_knight.gif");
@@ -82,8 +77,6 @@ public class Game
             whitePawns[c].putSelfInGrid(board, new Location(6, c));
         }
         BoardDisplay display = new BoardDisplay(board);
-        wKing = (King) whiteKing;
-        bKing = (King) blackKing;
         
         ComputationGraph network;
         try
@@ -113,15 +106,7 @@ public class Game
         display.setTitle(player.getName());
         Move next = player.nextMove();
         board.sequence.add(next.toString());
-        board.executeMove(next);
-        if (next.getPiece() instanceof King)
-		{
-			((King) next.getPiece()).setMoved(true);
-		}
-        else if (next.getPiece() instanceof Rook)
-        {
-            ((Rook) next.getPiece()).setMoved(true);
-        }
+        board.play(next);
         display.clearColors();
         display.setColor(next.getSource(), Color.YELLOW);
         display.setColor(next.getDestination(), Color.YELLOW);
@@ -132,9 +117,14 @@ public class Game
         catch(InterruptedException e) {}
     }
 
+    private static boolean hasLegalMoves(Board board)
+    {
+        return board.getPosition().generateLegalMoves(new int[Moves.MAX_MOVES], 0, false) > 0;
+    }
+
     /**
-     * The main play method that repeatedly takes moves from each player until the king either king
-     *      is captured.
+     * The main play method that repeatedly takes moves from each player until the player to move
+     *      has no legal moves left, which is checkmate or stalemate.
      * @param board the board to take turns on
      * @param display the display to display the board
      * @param white the white player
@@ -142,15 +132,20 @@ public class Game
      */
     public static void play(Board board, BoardDisplay display, Player white, Player black)
     {
-        while (wKing.getLocation() != null && bKing.getLocation() != null)
+        while (hasLegalMoves(board))
         {
             nextTurn(board, display, white);
             display.showBoard();
+            if (!hasLegalMoves(board))
+                break;
             nextTurn(board, display, black);
             display.showBoard();
             ++board.fullMove;
         }
-        if (wKing.getLocation() == null)
+        Bitboard position = board.getPosition();
+        if (!position.inCheck(position.moveWhite))
+            System.out.println("Stalemate!");
+        else if (position.moveWhite)
             System.out.println(black.getName() + " wins!");
         else
             System.out.println(white.getName() + " wins!");
@@ -0,0 +1,79 @@
+package src.board;
+
+/**
+ * The squares attacked by every piece type of both sides in one position. A Bitboard keeps one
+ *      map and fills it at most once per piece placement, so the evaluation terms of a node all
+ *      read the same attack sets instead of each generating them again. Check detection looks
+ *      at the king's square alone, since a search makes and unmakes moves between its lookups
+ *      and would refill the map for every child. Attacks include the squares of defended own
+ *      pieces.
+ */
+public final class AttackMap {
+    // [Bitboard.WHITE | Bitboard.BLACK][piece type], index 0 unused
+    private final long[][] pieces = new long[2][Bitboard.KING + 1];
+    private final long[] sides = new long[2];
+
+    private long key;
+    private boolean filled;
+
+    /**
+     * Returns the squares attacked by one piece type of a side.
+     * @param color Bitboard.WHITE or Bitboard.BLACK
+     * @param piece the piece type, Bitboard.PAWN to Bitboard.KING
+     * @return type long the attack set
+     */
+    public long attacks(int color, int piece) {
+        return this.pieces[color][piece];
+    }
+
+    /**
+     * Returns every square attacked or defended by a side.
+     * @param color Bitboard.WHITE or Bitboard.BLACK
+     * @return type long the attack set
+     */
+    public long attacks(int color) {
+        return this.sides[color];
+    }
+
+    // whether the map already holds the attacks of a piece placement
+    boolean holds(long key) {
+        return this.filled && this.key == key;
+    }
+
+    void fill(Bitboard board, long key) {
+        long occupied = board.whites | board.blacks;
+        for (int color = Bitboard.WHITE; color <= Bitboard.BLACK; ++color) {
+            long[] attacks = this.pieces[color];
+            attacks[Bitboard.PAWN] = Tables.pawnAttacks(color == Bitboard.WHITE, board.pieces(color, Bitboard.PAWN));
+
+            long knights = 0L;
+            for (long squares = board.pieces(color, Bitboard.KNIGHT); squares != 0L; squares &= squares - 1)
+                knights |= Tables.KNIGHT_ATTACKS[Long.numberOfTrailingZeros(squares)];
+            attacks[Bitboard.KNIGHT] = knights;
+
+            long bishops = 0L;
+            for (long squares = board.pieces(color, Bitboard.BISHOP); squares != 0L; squares &= squares - 1)
+                bishops |= Magic.bishopAttacks(Long.numberOfTrailingZeros(squares), occupied);
+            attacks[Bitboard.BISHOP] = bishops;
+
+            long rooks = 0L;
+            for (long squares = board.pieces(color, Bitboard.ROOK); squares != 0L; squares &= squares - 1)
+                rooks |= Magic.rookAttacks(Long.numberOfTrailingZeros(squares), occupied);
+            attacks[Bitboard.ROOK] = rooks;
+
+            long queens = 0L;
+            for (long squares = board.pieces(color, Bitboard.QUEEN); squares != 0L; squares &= squares - 1)
+                queens |= Magic.queenAttacks(Long.numberOfTrailingZeros(squares), occupied);
+            attacks[Bitboard.QUEEN] = queens;
+
+            long kings = 0L;
+            for (long squares = board.pieces(color, Bitboard.KING); squares != 0L; squares &= squares - 1)
+                kings |= Tables.KING_ATTACKS[Long.numberOfTrailingZeros(squares)];
+            attacks[Bitboard.KING] = kings;
+
+            this.sides[color] = attacks[Bitboard.PAWN] | knights | bishops | rooks | queens | kings;
+        }
+        this.key = key;
+        this.filled = true;
+    }
+}
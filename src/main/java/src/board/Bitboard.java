@@ -16,24 +16,80 @@ import src.piece.Rook;
 import java.awt.Color;
 
 public class Bitboard {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 1;
+    public static final int KNIGHT = 2;
+    public static final int BISHOP = 3;
+    public static final int ROOK = 4;
+    public static final int QUEEN = 5;
+    public static final int KING = 6;
+
     public int moveNumber;
     public boolean moveWhite;
 
-    public final long wPawns;
-    public final long wKnights;
-    public final long wBishops;
-    public final long wRooks;
-    public final long wQueens;
-    public final long wKings;
-    public final long bPawns;
-    public final long bKnights;
-    public final long bBishops;
-    public final long bRooks;
-    public final long bQueens;
-    public final long bKings;
-
-    public final long whites;
-    public final long blacks;
+    // the pieces of each type of both colors, a side's pieces are the type board and its color board
+    public long pawns;
+    public long knights;
+    public long bishops;
+    public long rooks;
+    public long queens;
+    public long kings;
+
+    public long whites;
+    public long blacks;
+
+    // the piece on every square as color << 3 | piece type, 0 when the square is empty
+    private final byte[] mailbox = new byte[64];
+
+    // which moves a generator writes: every move, captures and queen promotions, or the rest
+    public static final int ALL_MOVES = 0;
+    public static final int CAPTURES = 1;
+    public static final int QUIETS = 2;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    public int castlingRights;
+    public int enPassant = -1;
+    public int halfmoveClock;
+
+    // packed captured piece | castling rights | en passant square + 1 | halfmove clock per made move
+    private static final int MAX_UNDO = 1024;
+    private int[] undoStates;
+    private int undoCount;
+
+    // room for the legal moves of a single piece when validating a move
+    private int[] legalityMoves;
+
+    // material and piece-square totals for white minus black, and the game phase, updated on every toggle
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+
+    // attacks of the current piece placement, refilled when the placement changes
+    private AttackMap attackMap;
+
+    // Zobrist keys of the piece placement, the pawns only and the piece counts, updated on every toggle
+    private long pieceKey;
+    private long pawnKey;
+    private long materialKey;
+
+    // castling rights kept when a piece moves from or to each square
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASKS, WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASKS[60] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASKS[63] &= ~WHITE_KINGSIDE;
+        CASTLING_MASKS[56] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASKS[4] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASKS[7] &= ~BLACK_KINGSIDE;
+        CASTLING_MASKS[0] &= ~BLACK_QUEENSIDE;
+    }
 
     // public final long INIT_WPAWNS = 0x000000000000FF00L;
     // public final long INIT_WKNIGHTS = 0x0000000000000042L;
@@ -49,301 +105,266 @@ public class Bitboard {
     // public final long INIT_BQUEENS = 0x1000000000000000L;
     // public final long INIT_BKINGS = 0x0800000000000000L;
 
-    public final long INIT_BPAWNS = 0x000000000000FF00L;
-    public final long INIT_BKNIGHTS = 0x0000000000000042L;
-    public final long INIT_BBISHOPS = 0x0000000000000024L;
-    public final long INIT_BROOKS = 0x0000000000000081L;
-    public final long INIT_BQUEENS = 0x0000000000000010L;
-    public final long INIT_BKINGS = 0x0000000000000008L;
+    public static final long INIT_BPAWNS = 0x000000000000FF00L;
+    public static final long INIT_BKNIGHTS = 0x0000000000000042L;
+    public static final long INIT_BBISHOPS = 0x0000000000000024L;
+    public static final long INIT_BROOKS = 0x0000000000000081L;
+    public static final long INIT_BQUEENS = 0x0000000000000008L;
+    public static final long INIT_BKINGS = 0x0000000000000010L;
 
-    public final long INIT_WPAWNS = 0x00FF000000000000L;
-    public final long INIT_WKNIGHTS = 0x4200000000000000L;
-    public final long INIT_WBISHOPS = 0x2400000000000000L;
-    public final long INIT_WROOKS = 0x8100000000000000L;
-    public final long INIT_WQUEENS = 0x1000000000000000L;
-    public final long INIT_WKINGS = 0x0800000000000000L;
-
-    private static final long FILE_A = 0x0101010101010101L;
-    private static final long FILE_H = 0x8080808080808080L;
-
-    private final List<Long> JUMPS = initJumps();
-    private final byte[] DIAGNOLS = {
-        -9, -7, 7, 9
-    };
+    public static final long INIT_WPAWNS = 0x00FF000000000000L;
+    public static final long INIT_WKNIGHTS = 0x4200000000000000L;
+    public static final long INIT_WBISHOPS = 0x2400000000000000L;
+    public static final long INIT_WROOKS = 0x8100000000000000L;
+    public static final long INIT_WQUEENS = 0x0800000000000000L;
+    public static final long INIT_WKINGS = 0x1000000000000000L;
 
     public Bitboard() {
-        this.wPawns = INIT_WPAWNS;
-        this.wKnights = INIT_WKNIGHTS;
-        this.wBishops = INIT_WBISHOPS;
-        this.wRooks = INIT_WROOKS;
-        this.wQueens = INIT_WQUEENS;
-        this.wKings = INIT_WKINGS;
-        this.bPawns = INIT_BPAWNS;
-        this.bKnights = INIT_BKNIGHTS;
-        this.bBishops = INIT_BBISHOPS;
-        this.bRooks = INIT_BROOKS;
-        this.bQueens = INIT_BQUEENS;
-        this.bKings = INIT_BKINGS;
-
-        this.whites = whiteMoves();
-        this.blacks = blackMoves();
+        this(INIT_WPAWNS, INIT_WKNIGHTS, INIT_WBISHOPS, INIT_WROOKS, INIT_WQUEENS, INIT_WKINGS, INIT_BPAWNS, INIT_BKNIGHTS, INIT_BBISHOPS, INIT_BROOKS, INIT_BQUEENS, INIT_BKINGS);
+        this.castlingRights = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+        this.moveNumber = 1;
+        this.moveWhite = true;
     }
 
     private Bitboard(long wPawns, long wKnights, long wBishops, long wRooks, long wQueens, long wKings, long bPawns, long bKnights, long bBishops, long bRooks, long bQueens, long bKings) {
-        this.wPawns = wPawns;
-        this.wKnights = wKnights;
-        this.wBishops = wBishops;
-        this.wRooks = wRooks;
-        this.wQueens = wQueens;
-        this.wKings = wKings;
-        this.bPawns = bPawns;
-        this.bKnights = bKnights;
-        this.bBishops = bBishops;
-        this.bRooks = bRooks;
-        this.bQueens = bQueens;
-        this.bKings = bKings;
-
-        this.whites = whiteMoves();
-        this.blacks = blackMoves();
+        long[] pieces = {0L, wPawns, wKnights, wBishops, wRooks, wQueens, wKings, 0L, bPawns, bKnights, bBishops, bRooks, bQueens, bKings};
+        for (int color = WHITE; color <= BLACK; ++color) {
+            for (int piece = PAWN; piece <= KING; ++piece)
+                this.toggle(color == WHITE, piece, pieces[color * 7 + piece]);
+        }
+        this.rehash();
     }
 
-    public Bitboard allMoves() {
-        return new Bitboard(wPawnMoves(), wKnightMoves(), wBishopMoves(), wRookMoves(), wQueenMoves(), wKingMoves(), bPawnMoves(), bKnightMoves(), bBishopMoves(), bRookMoves(), bQueenMoves(), bKingMoves());
+    private Bitboard(Bitboard position) {
+        this.pawns = position.pawns;
+        this.knights = position.knights;
+        this.bishops = position.bishops;
+        this.rooks = position.rooks;
+        this.queens = position.queens;
+        this.kings = position.kings;
+        this.whites = position.whites;
+        this.blacks = position.blacks;
+        System.arraycopy(position.mailbox, 0, this.mailbox, 0, 64);
+        this.pieceKey = position.pieceKey;
+        this.pawnKey = position.pawnKey;
+        this.materialKey = position.materialKey;
+        this.middlegameScore = position.middlegameScore;
+        this.endgameScore = position.endgameScore;
+        this.phase = position.phase;
     }
 
     public long wPawnMoves() {
-        final long notFileA = ~FILE_A;
-        final long notFileH = ~FILE_H;
-        
         final long emptySquares = ~(this.whites | this.blacks);
     
         // single moves
-        long singleMoves = (this.wPawns >> 8) & emptySquares;
+        long singleMoves = ((this.pawns & this.whites) >>> 8) & emptySquares;
     
         // double moves
-        long doubleMoves = ((this.wPawns >> 16) & emptySquares & (emptySquares >> 8));
+        long doubleMoves = ((singleMoves & Tables.ROWS[5]) >>> 8) & emptySquares;
     
         // diagnol captures
-        long leftCaptures = (this.wPawns << 7) & this.blacks & notFileA;
-        long rightCaptures = (this.wPawns << 9) & this.blacks & notFileH;
+        long captures = Tables.pawnAttacks(true, this.pawns & this.whites) & this.blacks;
     
-        return singleMoves | doubleMoves | leftCaptures | rightCaptures;
+        return singleMoves | doubleMoves | captures;
     }
     
     public long wKnightMoves() {
         long legals = 0L;
-        for(final byte position : bitPositions(this.wKnights)) {
-            legals |= JUMPS.get(position) & ~(this.whites);
+        for (long knights = this.knights & this.whites; knights != 0L; knights &= knights - 1) {
+            legals |= Tables.KNIGHT_ATTACKS[Long.numberOfTrailingZeros(knights)];
         }
-        return legals;
+        return legals & ~this.whites;
     }
 
     public long wBishopMoves() {
         long legals = 0L;
-        for(final byte position : bitPositions(this.wBishops)) {
-            byte candidate = position;
-            for(final byte diagonal : DIAGNOLS) {
-                candidate += diagonal;
-                while(candidate >= 0 && candidate < 64 && (candidate | this.wPawns) == 0L) {
-                    legals |= candidate;
-                    if((candidate | this.blacks) != 0L) {
-                        break;
-                    }
-                    candidate += diagonal;
-                }
-            }
+        long occupied = this.whites | this.blacks;
+        for (long bishops = this.bishops & this.whites; bishops != 0L; bishops &= bishops - 1) {
+            legals |= Magic.bishopAttacks(Long.numberOfTrailingZeros(bishops), occupied);
         }
-        return legals;
+        return legals & ~this.whites;
     }
 
     public long wRookMoves() {
         long legals = 0L;
-        for (final byte position : bitPositions(this.wRooks)) {
-            int[] directions = {-8, 8, -1, 1}; 
-            for (int direction : directions) {
-                int candidate = position;
-                while (true) {
-                    candidate += direction;
-                    if (candidate < 0 || candidate >= 64 || 
-                        (candidate % 8 == 0 && direction == -1) || 
-                        (candidate % 8 == 7 && direction == 1) || 
-                        ((1L << candidate) & this.whites) != 0) {
-                        break;
-                    }
-                    legals |= 1L << candidate;
-                    if (((1L << candidate) & this.blacks) != 0) {
-                        break;
-                    }
-                }
-            }
+        long occupied = this.whites | this.blacks;
+        for (long rooks = this.rooks & this.whites; rooks != 0L; rooks &= rooks - 1) {
+            legals |= Magic.rookAttacks(Long.numberOfTrailingZeros(rooks), occupied);
         }
-        return legals;
-    }    
+        return legals & ~this.whites;
+    }
 
     public long wQueenMoves() {
         long legals = 0L;
-        for (final byte position : bitPositions(this.wQueens)) {
-            int[] directions = {-9, -8, -7, -1, 1, 7, 8, 9};
-    
-            for (int direction : directions) {
-                int candidate = position;
-                while (true) {
-                    candidate += direction;
-                    
-                    boolean isLeftEdgeCase = (direction == -1 || direction == -9 || direction == 7) && (candidate % 8 == 7);
-                    boolean isRightEdgeCase = (direction == 1 || direction == -7 || direction == 9) && (candidate % 8 == 0);
-                    if (candidate < 0 || candidate >= 64 || isLeftEdgeCase || isRightEdgeCase) {
-                        break;
-                    }
-                    legals |= 1L << candidate;
-    
-                    if (((1L << candidate) & (this.whites | this.blacks)) != 0) {
-                        break;
-                    }
-                }
-            }
+        long occupied = this.whites | this.blacks;
+        for (long queens = this.queens & this.whites; queens != 0L; queens &= queens - 1) {
+            legals |= Magic.queenAttacks(Long.numberOfTrailingZeros(queens), occupied);
         }
-        return legals;
+        return legals & ~this.whites;
     }
 
     public long wKingMoves() {
         long legals = 0L;
-        for (final byte position : bitPositions(this.wKings)) {
-            int[] directions = {-9, -8, -7, -1, 1, 7, 8, 9};
-            for (int direction : directions) {
-                int candidate = position + direction;
-                if (candidate >= 0 && candidate < 64 &&
-                    Math.abs(candidate % 8 - position % 8) <= 1 &&
-                    ((1L << candidate) & this.whites) == 0) {
-                    legals |= 1L << candidate;
-                }
-            }
+        for (long kings = this.kings & this.whites; kings != 0L; kings &= kings - 1) {
+            legals |= Tables.KING_ATTACKS[Long.numberOfTrailingZeros(kings)];
         }
-        return legals;
+        return legals & ~this.whites;
     }
 
     public long whiteMoves() {
-        return this.wPawns | this.wKnights | this.wBishops | this.wRooks | this.wQueens | this.wKings;
+        return (this.pawns | this.knights | this.bishops | this.rooks | this.queens | this.kings) & this.whites;
     }
 
     public long bPawnMoves() {
-        final long seventhRankMask = INIT_BPAWNS >> 8;
         final long emptySquares = ~(this.whites | this.blacks);
     
         // single move forward
-        long singleMoves = (this.bPawns >> 8) & emptySquares;
+        long singleMoves = ((this.pawns & this.blacks) << 8) & emptySquares;
     
         // double move forward
-        long doubleMoves = ((singleMoves & seventhRankMask) >> 8) & emptySquares;
+        long doubleMoves = ((singleMoves & Tables.ROWS[2]) << 8) & emptySquares;
     
         // diagonal captures
-        long leftCaptures = (this.bPawns >> 9) & this.whites & ~FILE_A;
-        long rightCaptures = (this.bPawns >> 7) & this.whites & ~FILE_H;
+        long captures = Tables.pawnAttacks(false, this.pawns & this.blacks) & this.whites;
     
-        return singleMoves | doubleMoves | leftCaptures | rightCaptures;
+        return singleMoves | doubleMoves | captures;
     }    
 
     public long bKnightMoves() {
         long legals = 0L;
-        for(final byte position : bitPositions(this.bKnights)) {
-            legals |= JUMPS.get(position) & ~(this.blacks);
+        for (long knights = this.knights & this.blacks; knights != 0L; knights &= knights - 1) {
+            legals |= Tables.KNIGHT_ATTACKS[Long.numberOfTrailingZeros(knights)];
         }
-        return legals;
+        return legals & ~this.blacks;
     }
 
     public long bBishopMoves() {
         long legals = 0L;
-        for(final byte position : bitPositions(this.bBishops)) {
-            byte candidate = position;
-            for(final byte diagonal : DIAGNOLS) {
-                candidate += diagonal;
-                while(candidate >= 0 && candidate < 64 && (candidate | this.blacks) == 0L) {
-                    legals |= candidate;
-                    if((candidate | this.whites) != 0L) {
-                        break;
-                    }
-                    candidate += diagonal;
-                }
-            }
+        long occupied = this.whites | this.blacks;
+        for (long bishops = this.bishops & this.blacks; bishops != 0L; bishops &= bishops - 1) {
+            legals |= Magic.bishopAttacks(Long.numberOfTrailingZeros(bishops), occupied);
         }
-        return legals;
+        return legals & ~this.blacks;
     }
-    
+
     public long bRookMoves() {
         long legals = 0L;
-        for (final byte position : bitPositions(this.bRooks)) {
-            int[] directions = {-8, 8, -1, 1}; 
-            for (int direction : directions) {
-                int candidate = position;
-                while (true) {
-                    candidate += direction;
-                    if (candidate < 0 || candidate >= 64 || 
-                        (candidate % 8 == 0 && direction == -1) || 
-                        (candidate % 8 == 7 && direction == 1) || 
-                        ((1L << candidate) & this.blacks) != 0) {
-                        break;
-                    }
-                    legals |= 1L << candidate;
-                    if (((1L << candidate) & this.whites) != 0) {
-                        break;
-                    }
-                }
-            }
+        long occupied = this.whites | this.blacks;
+        for (long rooks = this.rooks & this.blacks; rooks != 0L; rooks &= rooks - 1) {
+            legals |= Magic.rookAttacks(Long.numberOfTrailingZeros(rooks), occupied);
         }
-        return legals;
+        return legals & ~this.blacks;
     }
 
     public long bQueenMoves() {
         long legals = 0L;
-        for (final byte position : bitPositions(this.bQueens)) {
-            int[] directions = {-9, -8, -7, -1, 1, 7, 8, 9};
-    
-            for (int direction : directions) {
-                int candidate = position;
-                while (true) {
-                    candidate += direction;
-                    
-                    boolean isLeftEdgeCase = (direction == -1 || direction == -9 || direction == 7) && (candidate % 8 == 7);
-                    boolean isRightEdgeCase = (direction == 1 || direction == -7 || direction == 9) && (candidate % 8 == 0);
-                    if (candidate < 0 || candidate >= 64 || isLeftEdgeCase || isRightEdgeCase) {
-                        break;
-                    }
-                    legals |= 1L << candidate;
-    
-                    if (((1L << candidate) & (this.whites | this.blacks)) != 0) {
-                        break;
-                    }
-                }
-            }
+        long occupied = this.whites | this.blacks;
+        for (long queens = this.queens & this.blacks; queens != 0L; queens &= queens - 1) {
+            legals |= Magic.queenAttacks(Long.numberOfTrailingZeros(queens), occupied);
         }
-        return legals;
+        return legals & ~this.blacks;
     }
 
     public long bKingMoves() {
         long legals = 0L;
-        for (final byte position : bitPositions(this.bKings)) {
-            int[] directions = {-9, -8, -7, -1, 1, 7, 8, 9};
-            for (int direction : directions) {
-                int candidate = position + direction;
-                if (candidate >= 0 && candidate < 64 &&
-                    Math.abs(candidate % 8 - position % 8) <= 1 &&
-                    ((1L << candidate) & this.blacks) == 0) {
-                    legals |= 1L << candidate;
-                }
-            }
+        for (long kings = this.kings & this.blacks; kings != 0L; kings &= kings - 1) {
+            legals |= Tables.KING_ATTACKS[Long.numberOfTrailingZeros(kings)];
         }
-        return legals;
+        return legals & ~this.blacks;
     }    
 
     public long blackMoves() {
-        return this.bPawns | this.bKnights | this.bBishops | this.bRooks | this.bQueens | this.bKings;
+        return (this.pawns | this.knights | this.bishops | this.rooks | this.queens | this.kings) & this.blacks;
+    }
+
+    /**
+     * Returns whether a square is attacked by one side, looking outwards from the square with the
+     *      attack tables instead of generating the attacker's moves.
+     * @param square the square index to look at
+     * @param byWhite true to look for white attackers, false for black ones
+     * @return type boolean true if any piece of that side attacks the square
+     */
+    public boolean isSquareAttacked(int square, boolean byWhite) {
+        return this.isSquareAttacked(square, byWhite, this.whites | this.blacks);
+    }
+
+    private boolean isSquareAttacked(int square, boolean byWhite, long occupied) {
+        if (byWhite) {
+            return (Tables.PAWN_ATTACKS[BLACK][square] & this.pawns & this.whites) != 0
+                || (Tables.KNIGHT_ATTACKS[square] & this.knights & this.whites) != 0
+                || (Tables.KING_ATTACKS[square] & this.kings & this.whites) != 0
+                || (Magic.bishopAttacks(square, occupied) & ((this.bishops | this.queens) & this.whites)) != 0
+                || (Magic.rookAttacks(square, occupied) & ((this.rooks | this.queens) & this.whites)) != 0;
+        }
+        return (Tables.PAWN_ATTACKS[WHITE][square] & this.pawns & this.blacks) != 0
+            || (Tables.KNIGHT_ATTACKS[square] & this.knights & this.blacks) != 0
+            || (Tables.KING_ATTACKS[square] & this.kings & this.blacks) != 0
+            || (Magic.bishopAttacks(square, occupied) & ((this.bishops | this.queens) & this.blacks)) != 0
+            || (Magic.rookAttacks(square, occupied) & ((this.rooks | this.queens) & this.blacks)) != 0;
+    }
+
+    /**
+     * Returns every square attacked or defended by one side.
+     * @param white true for white's attacks, false for black's
+     * @return type long the attack map of the side
+     */
+    public long attacks(boolean white) {
+        return this.attackMap().attacks(white ? WHITE : BLACK);
+    }
+
+    /**
+     * Returns the attacks of every piece type of both sides, computed once for each piece
+     *      placement and shared by everything that looks at the position until a move changes it.
+     * @return type AttackMap the attack sets of the position
+     */
+    public AttackMap attackMap() {
+        if (this.attackMap == null)
+            this.attackMap = new AttackMap();
+        if (!this.attackMap.holds(this.pieceKey))
+            this.attackMap.fill(this, this.pieceKey);
+        return this.attackMap;
+    }
+
+    /**
+     * Returns the attack map only if it was already computed for the current piece placement,
+     *      for callers that can do without it rather than pay for refilling it.
+     * @return type AttackMap the attack sets of the position, or null if they are not at hand
+     */
+    public AttackMap cachedAttackMap() {
+        return this.attackMap != null && this.attackMap.holds(this.pieceKey) ? this.attackMap : null;
+    }
+
+    /**
+     * Returns every piece of either color attacking a square for a given occupancy, so that
+     *      removing pieces from the occupancy uncovers the sliders behind them.
+     * @param square the square index to look at
+     * @param occupied the occupancy the sliding attacks are computed with
+     * @return type long the attackers of both colors
+     */
+    public long attackersTo(int square, long occupied) {
+        return (Tables.PAWN_ATTACKS[BLACK][square] & this.pawns & this.whites)
+            | (Tables.PAWN_ATTACKS[WHITE][square] & this.pawns & this.blacks)
+            | (Tables.KNIGHT_ATTACKS[square] & this.knights)
+            | (Tables.KING_ATTACKS[square] & this.kings)
+            | (Magic.bishopAttacks(square, occupied) & (this.bishops | this.queens))
+            | (Magic.rookAttacks(square, occupied) & (this.rooks | this.queens));
+    }
+
+    /**
+     * Returns whether one side's king is attacked.
+     * @param white true for the white king, false for the black king
+     * @return type boolean true if the king is in check, false if it is safe or missing
+     */
+    public boolean inCheck(boolean white) {
+        long king = this.kings & (white ? this.whites : this.blacks);
+        return king != 0L && this.isSquareAttacked(Long.numberOfTrailingZeros(king), !white);
     }
 
     @Override
     public String toString() {
         String representation = new String("");
         String[] pieceTypes = {"BLACK KING", "BLACK QUEEN", "BLACK ROOKS", "BLACK BISHOPS", "BLACK KNIGHTS", "BLACK PAWNS", "WHITE KING", "WHITE QUEEN", "WHITE ROOKS", "WHITE BISHOPS", "WHITE KNIGHTS", "WHITE PAWNS"};
-        long[] pieceValues = {this.bKings, this.bQueens, this.bRooks, this.bBishops, this.bKnights, this.bPawns, this.wKings, this.wQueens, this.wRooks, this.wBishops, this.wKnights, this.wPawns};
+        long[] pieceValues = {this.kings & this.blacks, this.queens & this.blacks, this.rooks & this.blacks, this.bishops & this.blacks, this.knights & this.blacks, this.pawns & this.blacks, this.kings & this.whites, this.queens & this.whites, this.rooks & this.whites, this.bishops & this.whites, this.knights & this.whites, this.pawns & this.whites};
 
         for (int i = 0; i < pieceTypes.length; i++) {
             representation += binaryString(pieceTypes[i], pieceValues[i]);
@@ -359,95 +380,6 @@ public class Bitboard {
         return Arrays.stream(padded.split("(?<=\\G.{8})")).collect(Collectors.joining(" ", name + "\n", "\n\n"));
     }
 
-    private byte[] bitPositions(long n) {
-        final byte[] result = new byte[Long.bitCount(n)];
-        int i = 0;
-        for (byte bit = 0; n != 0L; bit++) {
-            if ((n & 1L) != 0) result[i++] = bit;
-            n >>>= 1;
-        }
-        return result;
-    }
-
-    private List<Long> initJumps() {
-        long[] jumps = new long[64];
-
-        jumps[0] = 1L << 10L | 1L << 17L;
-        jumps[1] = 1L << 11L | 1L << 16L | 1L << 18L;
-        jumps[2] = 1L << 8L | 1L << 12L | 1L << 17L | 1L << 19L;
-        jumps[3] = 1L << 9L | 1L << 13L | 1L << 18L | 1L << 20L;
-        jumps[4] = 1L << 10L | 1L << 14L | 1L << 19L | 1L << 21L;
-        jumps[5] = 1L << 11L | 1L << 15L | 1L << 20L | 1L << 22L;
-        jumps[6] = 1L << 12L | 1L << 21L | 1L << 23L;
-        jumps[7] = 1L << 13L | 1L << 22L;
-
-        jumps[8] = 1L << 2L | 1L << 18L | 1L << 25L;
-        jumps[9] = 1L << 3L | 1L << 19L | 1L << 24L | 1L << 26L;
-        jumps[10] = 1L | 1L << 4L | 1L << 16L | 1L << 20L | 1L << 25L | 1L << 27L;
-        jumps[11] = 1L << 1L | 1L << 5L | 1L << 17L | 1L << 21L | 1L << 26L | 1L << 28L;
-        jumps[12] = 1L << 2L | 1L << 6L | 1L << 18L | 1L << 22L | 1L << 27L | 1L << 29L;
-        jumps[13] = 1L << 3L | 1L << 7L | 1L << 19L | 1L << 23L | 1L << 28L | 1L << 30L;
-        jumps[14] = 1L << 4L | 1L << 20L | 1L << 29L | 1L << 31L;
-        jumps[15] = 1L << 5L | 1L << 21L | 1L << 30L;
-
-        jumps[16] = 1L << 1L | 1L << 10L | 1L << 26L | 1L << 33L;
-        jumps[17] = 1L | 1L << 2L | 1L << 11L | 1L << 27L | 1L << 32L | 1L << 34L;
-        jumps[18] = 1L << 1L | 1L << 3L | 1L << 8L | 1L << 12L | 1L << 24L | 1L << 28L | 1L << 33L | 1L << 35L;
-        jumps[19] = 1L << 2L | 1L << 4L | 1L << 9L | 1L << 13L | 1L << 25L | 1L << 29L | 1L << 34L | 1L << 36L;
-        jumps[20] = 1L << 3L | 1L << 5L | 1L << 10L | 1L << 14L | 1L << 26L | 1L << 30L | 1L << 35L | 1L << 37L;
-        jumps[21] = 1L << 4L | 1L << 6L | 1L << 11L | 1L << 15L | 1L << 27L | 1L << 31L | 1L << 36L | 1L << 38L;
-        jumps[22] = 1L << 5L | 1L << 7L | 1L << 12L | 1L << 28L | 1L << 37L | 1L << 39L;
-        jumps[23] = 1L << 6L | 1L << 13L | 1L << 29L | 1L << 38L;
-
-        jumps[24] = 1L << 9L | 1L << 18L | 1L << 34L | 1L << 41L;
-        jumps[25] = 1L << 8L | 1L << 10L | 1L << 19L | 1L << 35L | 1L << 40L | 1L << 42L;
-        jumps[26] = 1L << 9L | 1L << 11L | 1L << 16L | 1L << 20L | 1L << 32L | 1L << 36 | 1L << 41L | 1L << 43L;
-        jumps[27] = 1L << 10L | 1L << 12L | 1L << 17L | 1L << 21L | 1L << 33L | 1L << 37L | 1L << 42L | 1L << 44L;
-        jumps[28] = 1L << 11L | 1L << 13L | 1L << 18L | 1L << 22L | 1L << 34L | 1L << 38L | 1L << 43L | 1L << 45L;
-        jumps[29] = 1L << 12L | 1L << 14L | 1L << 19L | 1L << 23L | 1L << 35L | 1L << 39L | 1L << 44L | 1L << 46L;
-        jumps[30] = 1L << 13L | 1L << 15L | 1L << 20L | 1L << 36L | 1L << 45L | 1L << 47L;
-        jumps[31] = 1L << 14L | 1L << 21L | 1L << 37L | 1L << 46L;
-
-        jumps[32] = 1L << 17L | 1L << 26L | 1L << 42L | 1L << 49L;
-        jumps[33] = 1L << 16L | 1L << 18L | 1L << 27L | 1L << 43L | 1L << 48L | 1L << 50L;
-        jumps[34] = 1L << 17L | 1L << 19L | 1L << 24L | 1L << 28L | 1L << 40L | 1L << 44L | 1L << 49L | 1L << 51L;
-        jumps[35] = 1L << 18L | 1L << 20L | 1L << 25L | 1L << 29L | 1L << 41L | 1L << 45L | 1L << 50L | 1L << 52L;
-        jumps[36] = 1L << 19L | 1L << 21L | 1L << 26L | 1L << 30L | 1L << 42L | 1L << 46L | 1L << 51L | 1L << 53L;
-        jumps[37] = 1L << 20L | 1L << 22L | 1L << 27L | 1L << 31L | 1L << 43L | 1L << 47L | 1L << 52L | 1L << 54L;
-        jumps[38] = 1L << 21L | 1L << 23L | 1L << 28L | 1L << 44L | 1L << 53L | 1L << 55L;
-        jumps[39] = 1L << 22L | 1L << 29L | 1L << 45L | 1L << 54L;
-
-        jumps[40] = 1L << 25L | 1L << 34L | 1L << 50L | 1L << 57L;
-        jumps[41] = 1L << 24L | 1L << 26L | 1L << 35L | 1L << 51L | 1L << 56L | 1L << 58L;
-        jumps[42] = 1L << 25L | 1L << 27L | 1L << 32L | 1L << 36L | 1L << 48L | 1L << 52L | 1L << 57L | 1L << 59L;
-        jumps[43] = 1L << 26L | 1L << 28L | 1L << 33L | 1L << 37L | 1L << 49L | 1L << 53L | 1L << 58L | 1L << 60L;
-        jumps[44] = 1L << 27L | 1L << 29L | 1L << 34L | 1L << 38L | 1L << 50L | 1L << 54L | 1L << 59L | 1L << 61L;
-        jumps[45] = 1L << 28L | 1L << 30L | 1L << 35L | 1L << 39L | 1L << 51L | 1L << 55L | 1L << 60L | 1L << 62L;
-        jumps[46] = 1L << 29L | 1L << 31L | 1L << 36L | 1L << 52L | 1L << 61L | 1L << 63L;
-        jumps[47] = 1L << 30L | 1L << 37L | 1L << 53L | 1L << 62L;
-
-        jumps[48] = 1L << 33L | 1L << 42L | 1L << 58L;
-        jumps[49] = 1L << 32L | 1L << 34L | 1L << 43L | 1L << 59L;
-        jumps[50] = 1L << 33L | 1L << 35L | 1L << 40L | 1L << 44L | 1L << 56L | 1L << 60L;
-        jumps[51] = 1L << 34L | 1L << 36L | 1L << 41L | 1L << 45L | 1L << 57L | 1L << 61L;
-        jumps[52] = 1L << 35L | 1L << 37L | 1L << 42L | 1L << 46L | 1L << 58L | 1L << 62L;
-        jumps[53] = 1L << 36L | 1L << 38L | 1L << 43L | 1L << 47L | 1L << 59L | 1L << 63L;
-        jumps[54] = 1L << 37L | 1L << 39L | 1L << 44L | 1L << 60L;
-        jumps[55] = 1L << 38L | 1L << 45L | 1L << 61L;
-
-        jumps[56] = 1L << 41L | 1L << 50L;
-        jumps[57] = 1L << 40L | 1L << 42L | 1L << 51L;
-        jumps[58] = 1L << 41L | 1L << 43L | 1L << 48L | 1L << 52L;
-        jumps[59] = 1L << 42L | 1L << 44L | 1L << 49L | 1L << 53L;
-        jumps[60] = 1L << 43L | 1L << 45L | 1L << 50L | 1L << 54L;
-        jumps[61] = 1L << 44L | 1L << 46L | 1L << 51L | 1L << 55L;
-        jumps[62] = 1L << 45L | 1L << 47L | 1L << 52L;
-        jumps[63] = 1L << 46L | 1L << 53L;
-
-        List<Long> result = Arrays.stream(jumps).boxed().collect(Collectors.toList());
-        return result;
-    }
-
     public void printBitboard(long bitboard) {
         for (int row = 7; row >= 0; --row) {
             for (int col = 0; col < 8; ++col) {
@@ -463,67 +395,249 @@ public class Bitboard {
         System.out.println();
     }
 
-    public Bitboard movePiece(int fromIndex, int toIndex, Class<?> pieceType, boolean isWhite) {
-        long fromMask = 1L << fromIndex;
-        long toMask = 1L << toIndex;
-        long clearFromMask = ~fromMask;
-
-        // new bitboard values
-        long newWPawns = this.wPawns, newWKnights = this.wKnights, newWBishops = this.wBishops,
-             newWRooks = this.wRooks, newWQueens = this.wQueens, newWKings = this.wKings,
-             newBPawns = this.bPawns, newBKnights = this.bKnights, newBBishops = this.bBishops,
-             newBRooks = this.bRooks, newBQueens = this.bQueens, newBKings = this.bKings;
-
-        if (isWhite) {
-            if (Pawn.class.equals(pieceType))
-                newWPawns = (newWPawns & clearFromMask) | toMask;
-            else if (Knight.class.equals(pieceType))
-                newWKnights = (newWKnights & clearFromMask) | toMask;
-            else if (Bishop.class.equals(pieceType))
-                newWBishops = (newWBishops & clearFromMask) | toMask;
-            else if (Rook.class.equals(pieceType))
-                newWRooks = (newWRooks & clearFromMask) | toMask;
-            else if (Queen.class.equals(pieceType))
-                newWQueens = (newWQueens & clearFromMask) | toMask;
-            else if (King.class.equals(pieceType))
-                newWKings = (newWKings & clearFromMask) | toMask;
+    /**
+     * Plays a move on this position in place and pushes what is needed to take it back onto the
+     *      undo stack. The side that moves is the owner of the piece on the source square. Castling
+     *      also moves the rook, en passant removes the pawn behind the destination and a promotion
+     *      replaces the pawn with the promoted piece.
+     * @param move the packed move to play
+     */
+    public void makeMove(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int piece = Moves.piece(move);
+        int captured = Moves.captured(move);
+        int promotion = Moves.promotion(move);
+        long fromMask = 1L << from;
+        long toMask = 1L << to;
+        boolean white = (this.whites & fromMask) != 0;
+
+        push(captured);
+        if (captured != Moves.NONE)
+            toggle(!white, captured, 1L << captureSquare(move));
+        if (promotion != Moves.NONE) {
+            toggle(white, PAWN, fromMask);
+            toggle(white, promotion, toMask);
         } else {
-            if (Pawn.class.equals(pieceType))
-                newBPawns = (newBPawns & clearFromMask) | toMask;
-            else if (Knight.class.equals(pieceType))
-                newBKnights = (newBKnights & clearFromMask) | toMask;
-            else if (Bishop.class.equals(pieceType))
-                newBBishops = (newBBishops & clearFromMask) | toMask;
-            else if (Rook.class.equals(pieceType))
-                newBRooks = (newBRooks & clearFromMask) | toMask;
-            else if (Queen.class.equals(pieceType))
-                newBQueens = (newBQueens & clearFromMask) | toMask;
-            else if (King.class.equals(pieceType))
-                newBKings = (newBKings & clearFromMask) | toMask;
-        }
-
-        // clear target square if capture
-        if (isWhite) {
-            if ((toMask & this.blacks) != 0) {
-                newBPawns &= ~toMask;
-                newBKnights &= ~toMask;
-                newBBishops &= ~toMask;
-                newBRooks &= ~toMask;
-                newBQueens &= ~toMask;
-                newBKings &= ~toMask;
-            }
+            toggle(white, piece, fromMask | toMask);
+        }
+        if ((Moves.flags(move) & Moves.CASTLE) != 0)
+            toggle(white, ROOK, castlingRook(to));
+
+        this.castlingRights &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+        this.enPassant = (Moves.flags(move) & Moves.DOUBLE_PUSH) != 0 ? (from + to) / 2 : -1;
+        this.halfmoveClock = (piece == PAWN || captured != Moves.NONE) ? 0 : this.halfmoveClock + 1;
+        if (!white)
+            ++this.moveNumber;
+        this.moveWhite = !white;
+    }
+
+    /**
+     * Plays a move for good, without keeping what is needed to take it back. The undo stack is
+     *      bounded by the depth of a search line, so a game record of any length is kept with
+     *      this rather than makeMove.
+     * @param move the packed move to play
+     */
+    public void playMove(int move) {
+        makeMove(move);
+        --this.undoCount;
+    }
+
+    /**
+     * Takes back the last move played with makeMove, restoring the state from the undo stack.
+     * @param move the packed move that was played
+     */
+    public void unmakeMove(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        long toMask = 1L << to;
+        boolean white = (this.whites & toMask) != 0;
+
+        int state = pop();
+        int promotion = Moves.promotion(move);
+        if (promotion != Moves.NONE) {
+            toggle(white, promotion, toMask);
+            toggle(white, PAWN, 1L << from);
         } else {
-            if ((toMask & this.whites) != 0) {
-                newWPawns &= ~toMask;
-                newWKnights &= ~toMask;
-                newWBishops &= ~toMask;
-                newWRooks &= ~toMask;
-                newWQueens &= ~toMask;
-                newWKings &= ~toMask;
+            toggle(white, Moves.piece(move), (1L << from) | toMask);
+        }
+        if ((Moves.flags(move) & Moves.CASTLE) != 0)
+            toggle(white, ROOK, castlingRook(to));
+        int captured = state & 0x7;
+        if (captured != Moves.NONE)
+            toggle(!white, captured, 1L << captureSquare(move));
+
+        if (!white)
+            --this.moveNumber;
+        this.moveWhite = white;
+    }
+
+    /**
+     * Passes the turn without moving, used by null move pruning.
+     */
+    public void makeNullMove() {
+        push(Moves.NONE);
+        this.enPassant = -1;
+        this.moveWhite = !this.moveWhite;
+    }
+
+    public void unmakeNullMove() {
+        pop();
+        this.moveWhite = !this.moveWhite;
+    }
+
+    // the square of the captured piece, which for en passant is beside the source square
+    private static int captureSquare(int move) {
+        int to = Moves.to(move);
+        return (Moves.flags(move) & Moves.EN_PASSANT) != 0 ? (Moves.from(move) & 56) | (to & 7) : to;
+    }
+
+    // the source and destination squares of the rook for a castling king's destination
+    private static long castlingRook(int kingTo) {
+        switch (kingTo) {
+            case 62: return (1L << 63) | (1L << 61);
+            case 58: return (1L << 56) | (1L << 59);
+            case 6: return (1L << 7) | (1L << 5);
+            default: return (1L << 0) | (1L << 3);
+        }
+    }
+
+    private void push(int captured) {
+        if (this.undoStates == null)
+            this.undoStates = new int[MAX_UNDO];
+        this.undoStates[this.undoCount++] = captured | (this.castlingRights << 3) | ((this.enPassant + 1) << 7) | (this.halfmoveClock << 14);
+    }
+
+    private int pop() {
+        int state = this.undoStates[--this.undoCount];
+        this.castlingRights = (state >>> 3) & 0xF;
+        this.enPassant = ((state >>> 7) & 0x7F) - 1;
+        this.halfmoveClock = state >>> 14;
+        return state;
+    }
+
+    private void toggle(boolean white, int piece, long mask) {
+        int color = white ? WHITE : BLACK;
+        byte code = (byte) (color << 3 | piece);
+        for (long squares = mask; squares != 0L; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            long key = Zobrist.PIECES[color][piece][square];
+            this.pieceKey ^= key;
+            if (piece == PAWN)
+                this.pawnKey ^= key;
+            if (this.mailbox[square] == code) {
+                this.mailbox[square] = 0;
+                this.middlegameScore -= PieceSquare.MIDDLEGAME[color][piece][square];
+                this.endgameScore -= PieceSquare.ENDGAME[color][piece][square];
+                this.phase -= PieceSquare.PHASE_WEIGHTS[piece];
+            } else {
+                this.mailbox[square] = code;
+                this.middlegameScore += PieceSquare.MIDDLEGAME[color][piece][square];
+                this.endgameScore += PieceSquare.ENDGAME[color][piece][square];
+                this.phase += PieceSquare.PHASE_WEIGHTS[piece];
             }
         }
 
-        return new Bitboard(newWPawns, newWKnights, newWBishops, newWRooks, newWQueens, newWKings, newBPawns, newBKnights, newBBishops, newBRooks, newBQueens, newBKings);
+        switch (piece) {
+            case PAWN: this.pawns ^= mask; break;
+            case KNIGHT: this.knights ^= mask; break;
+            case BISHOP: this.bishops ^= mask; break;
+            case ROOK: this.rooks ^= mask; break;
+            case QUEEN: this.queens ^= mask; break;
+            default: this.kings ^= mask; break;
+        }
+        if (white)
+            this.whites ^= mask;
+        else
+            this.blacks ^= mask;
+
+        // a single square is a piece being added or removed, which changes the piece count
+        if ((mask & (mask - 1)) == 0) {
+            long pieces = this.pieces(color, piece);
+            int count = Long.bitCount(pieces);
+            int previous = (pieces & mask) != 0 ? count - 1 : count + 1;
+            this.materialKey ^= Zobrist.MATERIAL[color][piece][previous] ^ Zobrist.MATERIAL[color][piece][count];
+        }
+    }
+
+    /**
+     * Returns the squares occupied by one color's pieces of one type.
+     * @param color Bitboard.WHITE or Bitboard.BLACK
+     * @param piece the Bitboard piece type
+     * @return type long the piece set
+     */
+    public long pieces(int color, int piece) {
+        return this.pieces(piece) & (color == WHITE ? this.whites : this.blacks);
+    }
+
+    /**
+     * Returns the squares occupied by the pieces of one type of both colors.
+     * @param piece the Bitboard piece type
+     * @return type long the piece set
+     */
+    public long pieces(int piece) {
+        switch (piece) {
+            case PAWN: return this.pawns;
+            case KNIGHT: return this.knights;
+            case BISHOP: return this.bishops;
+            case ROOK: return this.rooks;
+            case QUEEN: return this.queens;
+            default: return this.kings;
+        }
+    }
+
+    /**
+     * Returns the Zobrist key of this position, covering the pieces, the side to move, the castling
+     *      rights and an en passant square that can actually be captured on. The piece part is kept
+     *      up to date by makeMove and unmakeMove; the rest is folded in here since those fields are
+     *      also set directly by callers.
+     * @return type long the 64-bit position key
+     */
+    public long hash() {
+        long key = this.pieceKey ^ Zobrist.CASTLING[this.castlingRights];
+        if (!this.moveWhite)
+            key ^= Zobrist.SIDE;
+        if (this.enPassant >= 0 && (Tables.PAWN_ATTACKS[this.moveWhite ? BLACK : WHITE][this.enPassant] & this.pawns & (this.moveWhite ? this.whites : this.blacks)) != 0)
+            key ^= Zobrist.EN_PASSANT[this.enPassant % 8];
+        return key;
+    }
+
+    /**
+     * Returns the Zobrist key of the piece placement alone, without side to move, castling rights
+     *      or en passant, for caching what depends on the pieces only such as the evaluation.
+     * @return type long the 64-bit piece key
+     */
+    public long pieceHash() {
+        return this.pieceKey;
+    }
+
+    /**
+     * Returns the Zobrist key of the pawns alone, for caching pawn structure evaluation.
+     * @return type long the 64-bit pawn key
+     */
+    public long pawnHash() {
+        return this.pawnKey;
+    }
+
+    /**
+     * Returns a Zobrist key of the number of pieces of each type and color.
+     * @return type long the 64-bit material key
+     */
+    public long materialHash() {
+        return this.materialKey;
+    }
+
+    private void rehash() {
+        this.pieceKey = 0L;
+        this.pawnKey = Zobrist.pieces(this.pawns & this.whites, WHITE, PAWN) ^ Zobrist.pieces(this.pawns & this.blacks, BLACK, PAWN);
+        this.materialKey = 0L;
+        for (int color = WHITE; color <= BLACK; ++color) {
+            for (int piece = PAWN; piece <= KING; ++piece) {
+                long pieces = this.pieces(color, piece);
+                this.pieceKey ^= Zobrist.pieces(pieces, color, piece);
+                this.materialKey ^= Zobrist.MATERIAL[color][piece][Long.bitCount(pieces)];
+            }
+        }
     }
 
     public Bitboard fromBoard(Board board) {
@@ -573,171 +687,399 @@ public class Bitboard {
             }
         }
 
-        return new Bitboard(wPawns, wKnights, wBishops, wRooks, wQueens, wKings, bPawns, bKnights, bBishops, bRooks, bQueens, bKings);
+        Bitboard bitboard = new Bitboard(wPawns, wKnights, wBishops, wRooks, wQueens, wKings, bPawns, bKnights, bBishops, bRooks, bQueens, bKings);
+        bitboard.moveNumber = 1;
+        bitboard.moveWhite = true;
+        bitboard.castlingRights = (canCastle(board, 7, 7, Color.WHITE) ? WHITE_KINGSIDE : 0) | (canCastle(board, 7, 0, Color.WHITE) ? WHITE_QUEENSIDE : 0)
+            | (canCastle(board, 0, 7, Color.BLACK) ? BLACK_KINGSIDE : 0) | (canCastle(board, 0, 0, Color.BLACK) ? BLACK_QUEENSIDE : 0);
+        return bitboard;
     }
 
-    public List<Move> generateAllMoves(Color color) {
-        List<Move> moves = new ArrayList<>();
-        boolean white = color.equals(Color.WHITE);
-        long pieces = white ? this.whites : this.blacks;
-
-        for (int i = 0; i < 64; ++i) {
-            long mask = 1L << i;
-            if ((mask & pieces) == 0)
+    /**
+     * Builds a bitboard from a position in Forsyth-Edwards Notation.
+     * @param fen the FEN string, the move counters may be left out
+     * @return type Bitboard the position described by the string
+     */
+    public Bitboard fromFEN(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        long[] pieces = new long[12]; // white pawn to king, then black pawn to king
+        int square = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/')
+                continue;
+            if (Character.isDigit(c)) {
+                square += c - '0';
                 continue;
-            if ((mask & (white ? this.wPawns : this.bPawns)) != 0)
-                moves.addAll(movesForPiece(mask, Pawn.class, color));
-            else if ((mask & (white ? this.wKnights : this.bKnights)) != 0)
-                moves.addAll(movesForPiece(mask, Knight.class, color));
-            else if ((mask & (white ? this.wBishops : this.bBishops)) != 0)
-                moves.addAll(movesForPiece(mask, Bishop.class, color));
-            else if ((mask & (white ? this.wRooks : this.bRooks)) != 0)
-                moves.addAll(movesForPiece(mask, Rook.class, color));
-            else if ((mask & (white ? this.wQueens : this.bQueens)) != 0)
-                moves.addAll(movesForPiece(mask, Queen.class, color));
-            else if ((mask & (white ? this.wKings : this.bKings)) != 0)
-                moves.addAll(movesForPiece(mask, King.class, color));
+            }
+            int piece = "pnbrqk".indexOf(Character.toLowerCase(c));
+            if (piece < 0 || square >= 64)
+                throw new IllegalArgumentException("Invalid FEN placement: " + fields[0]);
+            pieces[(Character.isUpperCase(c) ? 0 : 6) + piece] |= 1L << square++;
         }
-        
-        return moves;
+
+        Bitboard bitboard = new Bitboard(pieces[0], pieces[1], pieces[2], pieces[3], pieces[4], pieces[5], pieces[6], pieces[7], pieces[8], pieces[9], pieces[10], pieces[11]);
+        bitboard.moveWhite = fields.length < 2 || fields[1].equals("w");
+        bitboard.castlingRights = 0;
+        if (fields.length > 2) {
+            bitboard.castlingRights = (fields[2].indexOf('K') >= 0 ? WHITE_KINGSIDE : 0) | (fields[2].indexOf('Q') >= 0 ? WHITE_QUEENSIDE : 0)
+                | (fields[2].indexOf('k') >= 0 ? BLACK_KINGSIDE : 0) | (fields[2].indexOf('q') >= 0 ? BLACK_QUEENSIDE : 0);
+        }
+        if (fields.length > 3 && !fields[3].equals("-"))
+            bitboard.enPassant = (8 - (fields[3].charAt(1) - '0')) * 8 + (fields[3].charAt(0) - 'a');
+        bitboard.halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+        bitboard.moveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        return bitboard;
     }
 
-    private List<Move> movesForPiece(long pieceMask, Class<?> pieceType, Color color) {
-        List<Move> moves = new ArrayList<>();
-        int position = Long.numberOfTrailingZeros(pieceMask);
-    
-        if (Pawn.class.equals(pieceType)) {
-            int direction = (color == Color.WHITE) ? -8 : 8;
-            int startRank = (color == Color.WHITE) ? 6 : 1;
-            int leftCapture = (color == Color.WHITE) ? -9 : 7;
-            int rightCapture = (color == Color.WHITE) ? -7 : 9;
-        
-            long allPieces = this.whites | this.blacks;
-            long enemyPieces = (color == Color.WHITE) ? this.blacks : this.whites;
-        
-            int forwardOneIndex = position + direction;
-            if (forwardOneIndex >= 0 && forwardOneIndex < 64 && ((1L << forwardOneIndex) & allPieces) == 0) {
-                moves.add(new Move(new Pawn(color, null), new Location(position / 8, position % 8), new Location(forwardOneIndex / 8, forwardOneIndex % 8)));
-            }
-        
-            if (position / 8 == startRank) {
-                int forwardTwoIndex = position + 2 * direction;
-                if (forwardTwoIndex >= 0 && forwardTwoIndex < 64 && ((1L << forwardTwoIndex) & allPieces) == 0 && ((1L << (position + direction)) & allPieces) == 0) {
-                    moves.add(new Move(new Pawn(color, null), new Location(position / 8, position % 8), new Location(forwardTwoIndex / 8, forwardTwoIndex % 8)));
+    /**
+     * Writes this position in Forsyth-Edwards Notation, the inverse of fromFEN.
+     * @return type String the FEN string of the position
+     */
+    public String toFEN() {
+        StringBuilder fen = new StringBuilder();
+        for (int row = 0; row < 8; ++row) {
+            int empty = 0;
+            for (int col = 0; col < 8; ++col) {
+                int square = row * 8 + col;
+                int piece = this.pieceAt(square);
+                if (piece == Moves.NONE) {
+                    ++empty;
+                    continue;
                 }
+                if (empty != 0)
+                    fen.append(empty);
+                empty = 0;
+                char name = " pnbrqk".charAt(piece);
+                fen.append((this.whites & (1L << square)) != 0 ? Character.toUpperCase(name) : name);
             }
-        
-            int[] captures = {leftCapture, rightCapture};
-            for (int capture : captures) {
-                int captureIndex = position + capture;
-                // wrap around
-                boolean isValidCapture = true;
-                if (capture == leftCapture && position % 8 == 0) {
-                    isValidCapture = false;
-                }
-                if (capture == rightCapture && position % 8 == 7) {
-                    isValidCapture = false;
-                }
-                if (isValidCapture && captureIndex >= 0 && captureIndex < 64 && ((1L << captureIndex) & enemyPieces) != 0) {
-                    moves.add(new Move(new Pawn(color, null), new Location(position / 8, position % 8), new Location(captureIndex / 8, captureIndex % 8)));
-                }
+            if (empty != 0)
+                fen.append(empty);
+            if (row != 7)
+                fen.append('/');
+        }
+        fen.append(this.moveWhite ? " w " : " b ").append(this.castlingString());
+        fen.append(' ').append(this.enPassant < 0 ? "-" : "" + (char) ('a' + this.enPassant % 8) + (8 - this.enPassant / 8));
+        fen.append(' ').append(this.halfmoveClock).append(' ').append(this.moveNumber);
+        return fen.toString();
+    }
+
+    /**
+     * Returns the castling rights in FEN notation.
+     * @return type String some of KQkq, or - when neither side may castle
+     */
+    public String castlingString() {
+        String rights = ((this.castlingRights & WHITE_KINGSIDE) != 0 ? "K" : "") + ((this.castlingRights & WHITE_QUEENSIDE) != 0 ? "Q" : "")
+            + ((this.castlingRights & BLACK_KINGSIDE) != 0 ? "k" : "") + ((this.castlingRights & BLACK_QUEENSIDE) != 0 ? "q" : "");
+        return rights.isEmpty() ? "-" : rights;
+    }
+
+    private boolean canCastle(Board board, int row, int rookCol, Color color) {
+        Piece king = board.get(new Location(row, 4));
+        Piece rook = board.get(new Location(row, rookCol));
+        return king instanceof King && king.getColor().equals(color) && !((King) king).getMoved()
+            && rook instanceof Rook && rook.getColor().equals(color) && !((Rook) rook).getMoved();
+    }
+
+    /**
+     * Writes every pseudo-legal move for one side into a move array as packed moves.
+     * @param moves the array to write the moves into
+     * @param count the index to start writing at
+     * @param white true to generate white's moves, false for black's
+     * @param capturesOnly true to only generate captures
+     * @return type int the index one past the last move written
+     */
+    public int generateMoves(int[] moves, int count, boolean white, boolean capturesOnly) {
+        long own = white ? this.whites : this.blacks;
+        long enemy = white ? this.blacks : this.whites;
+        long occupied = this.whites | this.blacks;
+        long targets = capturesOnly ? enemy : ~own;
+        int type = capturesOnly ? CAPTURES : ALL_MOVES;
+
+        for (long pieces = own; pieces != 0L; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            int piece = pieceAt(from);
+            long attacks;
+            switch (piece) {
+                case PAWN:
+                    count = generatePawnMoves(moves, count, from, white, type, occupied, enemy, ~0L);
+                    continue;
+                case KNIGHT:
+                    attacks = Tables.KNIGHT_ATTACKS[from];
+                    break;
+                case BISHOP:
+                    attacks = Magic.bishopAttacks(from, occupied);
+                    break;
+                case ROOK:
+                    attacks = Magic.rookAttacks(from, occupied);
+                    break;
+                case QUEEN:
+                    attacks = Magic.queenAttacks(from, occupied);
+                    break;
+                default:
+                    attacks = Tables.KING_ATTACKS[from];
+                    break;
             }
-        } else if (Knight.class.equals(pieceType)) {
-            long possibleMoves = JUMPS.get(position);
-            long allyPieces = (color == Color.WHITE) ? this.whites : this.blacks;
-        
-            for (int i = 0; i < 64; i++) {
-                if ((possibleMoves & (1L << i)) != 0) {
-                    if (((1L << i) & allyPieces) == 0) {
-                        moves.add(new Move(new Knight(color, null), new Location(position / 8, position % 8), new Location(i / 8, i % 8)));
-                    }
-                }
+            for (attacks &= targets; attacks != 0L; attacks &= attacks - 1) {
+                int to = Long.numberOfTrailingZeros(attacks);
+                int captured = ((1L << to) & enemy) != 0 ? pieceAt(to) : Moves.NONE;
+                moves[count++] = Moves.encode(from, to, piece, captured, Moves.NONE, 0);
             }
-        } else if (Bishop.class.equals(pieceType)) {
-            int[] directions = {-9, -7, 7, 9}; // All four diagonals
-            for (int direction : directions) {
-                int nextPosition = position + direction;
-                while (nextPosition >= 0 && nextPosition < 64) {
-                    // prevent wrapping
-                    if ((direction == -9 || direction == 7) && nextPosition % 8 == 7) break;
-                    if ((direction == -7 || direction == 9) && nextPosition % 8 == 0) break;
-        
-                    long nextPositionMask = 1L << nextPosition;
-                    if ((nextPositionMask & (this.whites | this.blacks)) != 0) {
-                        if ((nextPositionMask & (color == Color.WHITE ? this.blacks : this.whites)) != 0) {
-                            moves.add(new Move(new Bishop(color, null), new Location(position / 8, position % 8), new Location(nextPosition / 8, nextPosition % 8)));
-                        }
-                        break;
-                    }
-        
-                    moves.add(new Move(new Bishop(color, null), new Location(position / 8, position % 8), new Location(nextPosition / 8, nextPosition % 8)));
-                    nextPosition += direction;
-                }
+        }
+        return this.generateEnPassant(moves, count, white, ~0L, false);
+    }
+
+    /*
+     * mask holds the squares the pawn may land on, for check evasions and pins. Promotions to a
+     *      queen count as captures, underpromotions as quiet moves even when they capture.
+     */
+    private int generatePawnMoves(int[] moves, int count, int from, boolean white, int type, long occupied, long enemy, long mask) {
+        int direction = white ? -8 : 8;
+        int forwardOne = from + direction;
+        boolean promotes = forwardOne < 8 || forwardOne >= 56;
+        if ((type != CAPTURES || promotes) && ((1L << forwardOne) & occupied) == 0) {
+            if (((1L << forwardOne) & mask) != 0)
+                count = addPawnMove(moves, count, from, forwardOne, Moves.NONE, promotes, type);
+            int forwardTwo = forwardOne + direction;
+            if (type != CAPTURES && from / 8 == (white ? 6 : 1) && ((1L << forwardTwo) & (occupied | ~mask)) == 0)
+                moves[count++] = Moves.encode(from, forwardTwo, PAWN, Moves.NONE, Moves.NONE, Moves.DOUBLE_PUSH);
+        }
+
+        if (type == QUIETS && !promotes)
+            return count;
+        long captures = Tables.PAWN_ATTACKS[white ? WHITE : BLACK][from] & enemy & mask;
+        for (; captures != 0L; captures &= captures - 1) {
+            int to = Long.numberOfTrailingZeros(captures);
+            count = addPawnMove(moves, count, from, to, pieceAt(to), promotes, type);
+        }
+        return count;
+    }
+
+    private static int addPawnMove(int[] moves, int count, int from, int to, int captured, boolean promotes, int type) {
+        if (!promotes) {
+            moves[count++] = Moves.encode(from, to, PAWN, captured, Moves.NONE, 0);
+            return count;
+        }
+        if (type != QUIETS)
+            moves[count++] = Moves.encode(from, to, PAWN, captured, QUEEN, 0);
+        if (type != CAPTURES) {
+            moves[count++] = Moves.encode(from, to, PAWN, captured, KNIGHT, 0);
+            moves[count++] = Moves.encode(from, to, PAWN, captured, ROOK, 0);
+            moves[count++] = Moves.encode(from, to, PAWN, captured, BISHOP, 0);
+        }
+        return count;
+    }
+
+    /*
+     * En passant captures onto the square skipped by the last double push. Legal generation
+     *      plays each one out, since removing two pawns from a rank can uncover a rook on the king.
+     */
+    private int generateEnPassant(int[] moves, int count, boolean white, long sources, boolean legal) {
+        if (this.enPassant < 0 || white != this.moveWhite)
+            return count;
+        long pawns = Tables.PAWN_ATTACKS[white ? BLACK : WHITE][this.enPassant] & this.pawns & (white ? this.whites : this.blacks) & sources;
+        for (; pawns != 0L; pawns &= pawns - 1) {
+            int move = Moves.encode(Long.numberOfTrailingZeros(pawns), this.enPassant, PAWN, PAWN, Moves.NONE, Moves.EN_PASSANT);
+            if (legal) {
+                this.makeMove(move);
+                boolean illegal = this.inCheck(white);
+                this.unmakeMove(move);
+                if (illegal)
+                    continue;
             }
-        } else if (Rook.class.equals(pieceType)) {
-            int[] directions = {-8, 8, -1, 1};
-            for (int direction : directions) {
-                int nextPosition = position;
-                while (true) {
-                    nextPosition += direction;
-                    
-                    if (direction == -1 && nextPosition % 8 == 7) break;
-                    if (direction == 1 && nextPosition % 8 == 0) break;
-                    if (nextPosition < 0 || nextPosition >= 64) break;
-        
-                    long nextPositionMask = 1L << nextPosition;
-                    if ((nextPositionMask & (this.whites | this.blacks)) != 0) {
-                        if ((nextPositionMask & (color == Color.WHITE ? this.blacks : this.whites)) != 0) {
-                            moves.add(new Move(new Rook(color, null), new Location(position / 8, position % 8), new Location(nextPosition / 8, nextPosition % 8)));
-                        }
-                        break;
-                    }
-        
-                    moves.add(new Move(new Rook(color, null), new Location(position / 8, position % 8), new Location(nextPosition / 8, nextPosition % 8)));
-                }
+            moves[count++] = move;
+        }
+        return count;
+    }
+
+    /**
+     * Writes every legal move of the side to move into a move array as packed moves. Checkers and
+     *      pinned pieces are computed once: in double check only the king moves, in single check
+     *      the other pieces may only capture the checker or block its ray, and a pinned piece may
+     *      only move along the line through its king.
+     * @param moves the array to write the moves into
+     * @param count the index to start writing at
+     * @param capturesOnly true to only generate captures and queen promotions
+     * @return type int the index one past the last move written
+     */
+    public int generateLegalMoves(int[] moves, int count, boolean capturesOnly) {
+        return this.generateLegalMoves(moves, count, capturesOnly ? CAPTURES : ALL_MOVES, ~0L);
+    }
+
+    /**
+     * Writes the legal moves of one type of the side to move into a move array, for generating
+     *      the moves of a node in stages. Captures and queen promotions are one type and every
+     *      other move, castling and underpromotions included, the other.
+     * @param moves the array to write the moves into
+     * @param count the index to start writing at
+     * @param type ALL_MOVES, CAPTURES or QUIETS
+     * @param sources the squares of the pieces to generate moves for
+     * @return type int the index one past the last move written
+     */
+    public int generateLegalMoves(int[] moves, int count, int type, long sources) {
+        boolean white = this.moveWhite;
+        long kingBoard = this.kings & (white ? this.whites : this.blacks);
+        if (kingBoard == 0L) { // no king to keep safe
+            int end = this.generateMoves(moves, count, white, false);
+            for (int i = count; i < end; ++i) {
+                if (((1L << Moves.from(moves[i])) & sources) != 0 && (type == ALL_MOVES || (type == CAPTURES) == isTactical(moves[i])))
+                    moves[count++] = moves[i];
             }
-        } else if (Queen.class.equals(pieceType)) {
-            int[] directions = {-9, -8, -7, -1, 1, 7, 8, 9};
-            for (int direction : directions) {
-                int nextPosition = position;
-                while (true) {
-                    nextPosition += direction;
-        
-                    if (nextPosition < 0 || nextPosition >= 64) break;
-                    if (direction == -1 && nextPosition % 8 == 7) break;
-                    if (direction == 1 && nextPosition % 8 == 0) break;
-                    if ((direction == -9 || direction == 7) && nextPosition % 8 == 7) break;
-                    if ((direction == -7 || direction == 9) && nextPosition % 8 == 0) break;
-        
-                    long nextPositionMask = 1L << nextPosition;
-        
-                    if ((nextPositionMask & (this.whites | this.blacks)) != 0) {
-                        if ((nextPositionMask & (color == Color.WHITE ? this.blacks : this.whites)) != 0) {
-                            moves.add(new Move(new Queen(color, null), new Location(position / 8, position % 8), new Location(nextPosition / 8, nextPosition % 8)));
-                        }
-                        break;
-                    }
-                    moves.add(new Move(new Queen(color, null), new Location(position / 8, position % 8), new Location(nextPosition / 8, nextPosition % 8)));
-                }
+            return count;
+        }
+
+        long own = white ? this.whites : this.blacks;
+        long enemy = white ? this.blacks : this.whites;
+        long occupied = this.whites | this.blacks;
+        int king = Long.numberOfTrailingZeros(kingBoard);
+        long checkers = this.attackersTo(king, occupied) & enemy;
+
+        long typeTargets = type == CAPTURES ? enemy : type == QUIETS ? ~occupied : ~own;
+
+        // the king may not step onto an attacked square, nor back along the ray of a slider
+        long withoutKing = occupied ^ kingBoard;
+        long kingTargets = (sources & kingBoard) != 0 ? Tables.KING_ATTACKS[king] & typeTargets : 0L;
+        for (long targets = kingTargets; targets != 0L; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            if (!this.isSquareAttacked(to, !white, withoutKing))
+                moves[count++] = Moves.encode(king, to, KING, ((1L << to) & enemy) != 0 ? this.pieceAt(to) : Moves.NONE, Moves.NONE, 0);
+        }
+        if ((checkers & (checkers - 1)) != 0)
+            return count; // double check
+
+        long evasions = checkers == 0L ? ~0L : Tables.BETWEEN[king][Long.numberOfTrailingZeros(checkers)] | checkers;
+        long pinned = this.pinned(king, own, enemy, occupied);
+        long targets = typeTargets & evasions;
+
+        for (long pieces = own & ~kingBoard & sources; pieces != 0L; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            long line = (pinned & (1L << from)) != 0 ? Tables.LINE[king][from] : ~0L;
+            int piece = this.pieceAt(from);
+            long attacks;
+            switch (piece) {
+                case PAWN:
+                    count = generatePawnMoves(moves, count, from, white, type, occupied, enemy, evasions & line);
+                    continue;
+                case KNIGHT:
+                    attacks = Tables.KNIGHT_ATTACKS[from];
+                    break;
+                case BISHOP:
+                    attacks = Magic.bishopAttacks(from, occupied);
+                    break;
+                case ROOK:
+                    attacks = Magic.rookAttacks(from, occupied);
+                    break;
+                default:
+                    attacks = Magic.queenAttacks(from, occupied);
+                    break;
             }
-        }   else if (King.class.equals(pieceType)) {
-            int[] directions = {-9, -8, -7, -1, 1, 7, 8, 9};
-        
-            for (int direction : directions) {
-                int nextPosition = position + direction;
-        
-                if (nextPosition >= 0 && nextPosition < 64 && Math.abs(nextPosition % 8 - position % 8) <= 1) {
-                    long nextPositionMask = 1L << nextPosition;
-                    long occupied = this.whites | this.blacks;
-        
-                    if ((nextPositionMask & occupied) == 0 || (nextPositionMask & (color == Color.WHITE ? this.blacks : this.whites)) != 0) {
-                        moves.add(new Move(new King(color, null), new Location(position / 8, position % 8), new Location(nextPosition / 8, nextPosition % 8)));
-                    }
-                }
+            for (attacks &= targets & line; attacks != 0L; attacks &= attacks - 1) {
+                int to = Long.numberOfTrailingZeros(attacks);
+                int captured = ((1L << to) & enemy) != 0 ? pieceAt(to) : Moves.NONE;
+                moves[count++] = Moves.encode(from, to, piece, captured, Moves.NONE, 0);
             }
         }
-    
-        return moves;
+
+        if (type != QUIETS)
+            count = this.generateEnPassant(moves, count, white, sources, true);
+        if (type != CAPTURES && checkers == 0L && (sources & kingBoard) != 0)
+            count = this.generateCastling(moves, count, white, occupied);
+        return count;
+    }
+
+    /**
+     * Returns whether a packed move, for example one stored in the transposition table for
+     *      another position with the same key, is a legal move of the side to move here.
+     * @param move the packed move to validate
+     * @return type boolean true if the move can be played in this position
+     */
+    public boolean isLegal(int move) {
+        int from = Moves.from(move);
+        if (move == Moves.NONE || (((this.moveWhite ? this.whites : this.blacks) >>> from) & 1) == 0 || this.pieceAt(from) != Moves.piece(move))
+            return false;
+        if (this.legalityMoves == null)
+            this.legalityMoves = new int[Moves.MAX_MOVES];
+        int end = this.generateLegalMoves(this.legalityMoves, 0, ALL_MOVES, 1L << from);
+        for (int i = 0; i < end; ++i) {
+            if (this.legalityMoves[i] == move)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a move is generated with the CAPTURES type rather than QUIETS: captures,
+     *      en passant and promotions to a queen.
+     * @param move the packed move
+     * @return type boolean true for a capture that does not underpromote or a queen promotion
+     */
+    public static boolean isTactical(int move) {
+        return Moves.promotion(move) == QUEEN || (Moves.isCapture(move) && Moves.promotion(move) == Moves.NONE);
+    }
+
+    // own pieces that are the only blocker between the king and an enemy slider
+    private long pinned(int king, long own, long enemy, long occupied) {
+        long snipers = (Magic.rookAttacks(king, 0L) & enemy & (this.rooks | this.queens))
+            | (Magic.bishopAttacks(king, 0L) & enemy & (this.bishops | this.queens));
+        long pinned = 0L;
+        for (; snipers != 0L; snipers &= snipers - 1) {
+            long blockers = Tables.BETWEEN[king][Long.numberOfTrailingZeros(snipers)] & occupied;
+            if (blockers != 0L && (blockers & (blockers - 1)) == 0)
+                pinned |= blockers & own;
+        }
+        return pinned;
+    }
+
+    // castling while not in check, over empty squares the king does not cross an attack on
+    private int generateCastling(int[] moves, int count, boolean white, long occupied) {
+        int king = white ? 60 : 4;
+        int kingside = white ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = white ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        long rooks = this.rooks & (white ? this.whites : this.blacks);
+        if ((this.castlingRights & kingside) != 0 && (rooks & (1L << (king + 3))) != 0
+                && (occupied & ((1L << (king + 1)) | (1L << (king + 2)))) == 0
+                && !this.isSquareAttacked(king + 1, !white) && !this.isSquareAttacked(king + 2, !white))
+            moves[count++] = Moves.encode(king, king + 2, KING, Moves.NONE, Moves.NONE, Moves.CASTLE);
+        if ((this.castlingRights & queenside) != 0 && (rooks & (1L << (king - 4))) != 0
+                && (occupied & ((1L << (king - 1)) | (1L << (king - 2)) | (1L << (king - 3)))) == 0
+                && !this.isSquareAttacked(king - 1, !white) && !this.isSquareAttacked(king - 2, !white))
+            moves[count++] = Moves.encode(king, king - 2, KING, Moves.NONE, Moves.NONE, Moves.CASTLE);
+        return count;
+    }
+
+    /**
+     * Counts the leaf nodes of the legal move tree of this position, see Perft.
+     * @param depth the number of plies to count to
+     * @return type long the number of leaf nodes
+     */
+    public long perft(int depth) {
+        return Perft.perft(this, depth);
+    }
+
+    /**
+     * Prints the leaf nodes below every legal move of this position and returns their total.
+     * @param depth the number of plies to count to, at least 1
+     * @return type long the number of leaf nodes
+     */
+    public long divide(int depth) {
+        return Perft.divide(this, depth, null, null, System.out);
+    }
+
+    /**
+     * Returns the type of the piece on a square without creating any Piece objects.
+     * @param square the square index to look at
+     * @return type int the piece type, or Moves.NONE for an empty square
+     */
+    public int pieceAt(int square) {
+        return this.mailbox[square] & 7;
+    }
+
+    /**
+     * Returns the color of the piece on a square.
+     * @param square the square index to look at
+     * @return type int Bitboard.WHITE or Bitboard.BLACK, meaningless for an empty square
+     */
+    public int colorAt(int square) {
+        return this.mailbox[square] >>> 3;
     }
 
     public int index(Location location) {
@@ -745,12 +1087,13 @@ public class Bitboard {
     }
 
     public Bitboard processMove(Move move) {
-        int fromIndex = index(move.getSource());
-        int toIndex = index(move.getDestination());
-        Class<?> pieceType = move.getPiece().getClass();
-        boolean isWhite = move.getPiece().getColor().equals(Color.WHITE);
-    
-        return this.movePiece(fromIndex, toIndex, pieceType, isWhite);
+        return this.processMove(Moves.fromMove(move, this));
+    }
+
+    public Bitboard processMove(int move) {
+        Bitboard next = this.copy();
+        next.makeMove(move);
+        return next;
     }
 
     public void printWhitePieces() {
@@ -764,18 +1107,18 @@ public class Bitboard {
     public double[][][] to3dBitboard() {
         double[][][] bitboards = new double[19][8][8];
 
-        fillLayer(bitboards, this.wPawns, 0);
-        fillLayer(bitboards, this.wKnights, 1);
-        fillLayer(bitboards, this.wBishops, 2);
-        fillLayer(bitboards, this.wRooks, 3);
-        fillLayer(bitboards, this.wQueens, 4);
-        fillLayer(bitboards, this.wKings, 5);
-        fillLayer(bitboards, this.bPawns, 6);
-        fillLayer(bitboards, this.bKnights, 7);
-        fillLayer(bitboards, this.bBishops, 8);
-        fillLayer(bitboards, this.bRooks, 9);
-        fillLayer(bitboards, this.bQueens, 10);
-        fillLayer(bitboards, this.bKings, 11);
+        fillLayer(bitboards, this.pawns & this.whites, 0);
+        fillLayer(bitboards, this.knights & this.whites, 1);
+        fillLayer(bitboards, this.bishops & this.whites, 2);
+        fillLayer(bitboards, this.rooks & this.whites, 3);
+        fillLayer(bitboards, this.queens & this.whites, 4);
+        fillLayer(bitboards, this.kings & this.whites, 5);
+        fillLayer(bitboards, this.pawns & this.blacks, 6);
+        fillLayer(bitboards, this.knights & this.blacks, 7);
+        fillLayer(bitboards, this.bishops & this.blacks, 8);
+        fillLayer(bitboards, this.rooks & this.blacks, 9);
+        fillLayer(bitboards, this.queens & this.blacks, 10);
+        fillLayer(bitboards, this.kings & this.blacks, 11);
 
         // 12, 13, 14, 15 = KQkq castling
         // 17 = active color
@@ -796,70 +1139,52 @@ public class Bitboard {
     }
 
     public Bitboard copy() {
-        return new Bitboard(this.wPawns, this.wKnights, this.wBishops, this.wRooks, this.wQueens, this.wKings, this.bPawns, this.bKnights, this.bBishops, this.bRooks, this.bQueens, this.bKings);
+        Bitboard copy = new Bitboard(this);
+        copy.moveNumber = this.moveNumber;
+        copy.moveWhite = this.moveWhite;
+        copy.castlingRights = this.castlingRights;
+        copy.enPassant = this.enPassant;
+        copy.halfmoveClock = this.halfmoveClock;
+        return copy;
+    }
+
+    /**
+     * Returns the material and piece-square score of the position for white, blended between its
+     *      middle game and end game values by the game phase. The totals are kept up to date by
+     *      makeMove and unmakeMove, so this costs the same at every node.
+     * @return type int the tapered score, positive when white is ahead
+     */
+    public int pieceSquareScore() {
+        return PieceSquare.taper(this.middlegameScore, this.endgameScore, this.phase);
+    }
+
+    /**
+     * Returns the game phase, the weighted count of the knights, bishops, rooks and queens left.
+     * @return type int from PieceSquare.MAX_PHASE or more at the start down to 0
+     */
+    public int phase() {
+        return this.phase;
     }
 
     public boolean endgame() {
-        return (Long.bitCount(this.whites) + Long.bitCount(this.blacks)) <= 20;
+        return Long.bitCount(this.whites | this.blacks) <= 20;
     }
 
     public boolean midgame() {
-        return (Long.bitCount(this.whites) + Long.bitCount(this.blacks)) <= 28;
+        return Long.bitCount(this.whites | this.blacks) <= 28;
     }
     
     public boolean tactical(Color color) {
         boolean w = color.equals(Color.WHITE);
-        long m = w ? this.blackMoves() : this.whiteMoves();
-        if (Long.bitCount(m & (w ? this.wKings : this.bKings)) >= 1) return true;
-        if (Long.bitCount(m & (w ? this.wQueens : this.bQueens)) >= 1) return true;
+        long m = this.attacks(!w);
+        if (Long.bitCount(m & this.kings & (w ? this.whites : this.blacks)) >= 1) return true;
+        if (Long.bitCount(m & this.queens & (w ? this.whites : this.blacks)) >= 1) return true;
         int attacked = 2;
-        attacked += Long.bitCount(m & (w ? this.wKnights : this.bKnights));
+        attacked += Long.bitCount(m & this.knights & (w ? this.whites : this.blacks));
         if (attacked >= 3) return true;
-        attacked += Long.bitCount(m & (w ? this.wBishops : this.bBishops));
+        attacked += Long.bitCount(m & this.bishops & (w ? this.whites : this.blacks));
         if (attacked >= 3) return true;
-        attacked += Long.bitCount(m & (w ? this.wRooks : this.bRooks));
+        attacked += Long.bitCount(m & this.rooks & (w ? this.whites : this.blacks));
         return attacked >= 3;
     }
-
-    public List<Move> captureMoves(Color color) {
-        List<Move> allMoves = generateAllMoves(color);
-        long opponentPieces = color.equals(Color.WHITE) ? this.blacks : this.whites;
-    
-        return allMoves.stream().filter(move -> {
-            Location destination = move.getDestination();
-            long destinationMask = 1L << index(destination);
-            return (destinationMask & opponentPieces) != 0;
-        }).collect(Collectors.toList());
-    }
-
-    public Piece get(Location l) {
-        int index = this.index(l);
-        long mask = 1L << index;
-        if ((mask & this.wPawns) != 0) {
-            return new Pawn(Color.WHITE, null);
-        } else if ((mask & this.bPawns) != 0) {
-            return new Pawn(Color.BLACK, null);
-        } else if ((mask & this.wKnights) != 0) {
-            return new Knight(Color.WHITE, null);
-        } else if ((mask & this.bKnights) != 0) {
-            return new Knight(Color.BLACK, null);
-        } else if ((mask & this.wBishops) != 0) {
-            return new Bishop(Color.WHITE, null);
-        } else if ((mask & this.bBishops) != 0) {
-            return new Bishop(Color.BLACK, null);
-        } else if ((mask & this.wRooks) != 0) {
-            return new Rook(Color.WHITE, null);
-        } else if ((mask & this.bRooks) != 0) {
-            return new Rook(Color.BLACK, null);
-        } else if ((mask & this.wQueens) != 0) {
-            return new Queen(Color.WHITE, null);
-        } else if ((mask & this.bQueens) != 0) {
-            return new Queen(Color.BLACK, null);
-        } else if ((mask & this.wKings) != 0) {
-            return new King(Color.WHITE, null);
-        } else if ((mask & this.bKings) != 0) {
-            return new King(Color.BLACK, null);
-        }
-        return null; // king or empty
-    }
 }
\ No newline at end of file
@@ -2,7 +2,6 @@ package src.board;
 
 import java.awt.*;
 import java.util.*;
-import src.Game;
 import src.Location;
 import src.Move;
 import src.piece.Bishop;
@@ -24,6 +23,9 @@ public class Board extends BoundedGrid<Piece>
 	public int fullMove;
 	public ArrayList<String> sequence;
 
+	// the full game state, castling rights, en passant and clocks, kept in step with the pieces by play
+	private Bitboard position;
+
 	// Constructs a new Board with the given dimensions
 	public Board()
 	{
@@ -140,6 +142,75 @@ public class Board extends BoundedGrid<Piece>
         return moves;
     }
 
+	/**
+	 * Returns the bitboard position of the game, created from the pieces on first use and updated
+	 * 		by every move played with play.
+	 * @return type Bitboard the current game state, not to be modified by callers
+	 */
+	public Bitboard getPosition()
+	{
+		if (this.position == null)
+		{
+			this.position = new Bitboard().fromBoard(this);
+		}
+		return this.position;
+	}
+
+	/**
+	 * Plays a move of the game: the pieces are moved, including the pawn taken en passant and a
+	 * 		pawn promoting to a queen, the king and rook are marked as moved, and the bitboard
+	 * 		position is updated with the move.
+	 * @param move the move to play
+	 */
+	public void play(Move move)
+	{
+		Bitboard position = this.getPosition();
+		int packed = Moves.fromMove(move, position);
+		Piece piece = move.getPiece();
+		if ((Moves.flags(packed) & Moves.EN_PASSANT) != 0)
+		{
+			this.get(new Location(move.getSource().getRow(), move.getDestination().getCol())).removeSelfFromGrid();
+			piece.moveTo(move.getDestination());
+		}
+		else
+		{
+			this.executeMove(move);
+		}
+		if (Moves.promotion(packed) != Moves.NONE)
+		{
+			piece.removeSelfFromGrid();
+			String color = piece.getColor().equals(Color.WHITE) ? "white" : "black";
+			new Queen(piece.getColor(), "./img/" + color + "_queen.gif").putSelfInGrid(this, move.getDestination());
+		}
+		if (piece instanceof King)
+		{
+			((King) piece).setMoved(true);
+		}
+		else if (piece instanceof Rook)
+		{
+			((Rook) piece).setMoved(true);
+		}
+		position.playMove(packed);
+	}
+
+	/**
+	 * Finds the king of one side.
+	 * @param color the color of the king
+	 * @return type Location the location of the king, or null if it is not on the board
+	 */
+	public Location findKing(Color color)
+	{
+		for (Location l : getOccupiedLocations())
+		{
+			Piece p = get(l);
+			if (p instanceof King && p.getColor().equals(color))
+			{
+				return l;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Executes a move by checking if it is valid or not and then moving the piece as well as
 	 * 		checking if the given move is a castle or not.
@@ -261,53 +332,25 @@ public class Board extends BoundedGrid<Piece>
 		return FEN;
 	}
 
-	private Piece getEnPassantTarget()
+	private String getEnPassantTarget()
 	{
-		return null;
+		int square = this.getPosition().enPassant;
+		return square < 0 ? null : "" + (char) ('a' + square % 8) + (8 - square / 8);
 	}
 
 	private int getHalfmoveClock()
 	{
-		return 0;
+		return this.getPosition().halfmoveClock;
 	}
 
 	private int getFullmoveNumber()
 	{
-		return 1;
+		return this.getPosition().moveNumber;
 	}
 
 	private String getCastlingRights()
 	{
-		King whiteKing = Game.wKing, blackKing = Game.bKing;
-		Rook wRookKing = Game.wRookKing, wRookQueen = Game.wRookQueen, bRookKing = Game.bRookKing, bRookQueen = Game.bRookQueen;
-		String rights = "";
-		if (!whiteKing.getMoved())
-		{
-			Location loc = new Location(whiteKing.getLocation().getRow(), whiteKing.getLocation().getCol() + 2);
-			if (!wRookKing.getMoved() && whiteKing.isValidCastle(whiteKing.getLocation(), loc))
-			{
-				rights += "K";
-			}
-			loc = new Location(whiteKing.getLocation().getRow(), whiteKing.getLocation().getCol() - 2);
-			if (!wRookQueen.getMoved() && whiteKing.isValidCastle(whiteKing.getLocation(), loc))
-			{
-				rights += "Q";
-			}
-		}
-		if (!blackKing.getMoved())
-		{
-			Location loc = new Location(blackKing.getLocation().getRow(), blackKing.getLocation().getCol() + 2);
-			if (!bRookKing.getMoved() && blackKing.isValidCastle(blackKing.getLocation(), loc))
-			{
-				rights += "k";
-			}
-			loc = new Location(blackKing.getLocation().getRow(), blackKing.getLocation().getCol() - 2);
-			if (!bRookQueen.getMoved() && blackKing.isValidCastle(blackKing.getLocation(), loc))
-			{
-				rights += "q";
-			}
-		}
-		return rights.equals("") ? "-" : rights;
+		return this.getPosition().castlingString();
 	}
 
 	public double[][][] boardToBitboards() {
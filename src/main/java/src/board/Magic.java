@@ -0,0 +1,129 @@
+package src.board;
+
+/**
+ * Magic bitboard attack tables for the sliding pieces. The occupancy masks, magic multipliers and
+ *      attack tables are built once when the class is loaded and shared by every Bitboard, so a
+ *      slider attack set is a single multiply, shift and table lookup.
+ */
+public final class Magic {
+    private static final long[] ROOK_MAGICS = {
+        0x0080002080400015L, 0x0140200140001000L, 0x0200082200104082L, 0x0100100008210004L,
+        0x0200040200081020L, 0x0200014200100448L, 0x1080010002000080L, 0x41801B0001204080L,
+        0x0020800084344002L, 0x8004804000200080L, 0x2300808010002000L, 0x0000800800801000L,
+        0x6004800400800800L, 0x1001000401000208L, 0x220C00020110281CL, 0x0212000080420401L,
+        0x1040008000208041L, 0x1240002010002800L, 0x4100848020021000L, 0x0100230008100100L,
+        0x0020808008000400L, 0x0004808004000200L, 0x1000040008010210L, 0x200402002085430CL,
+        0x9000400080008026L, 0x00002000C0005000L, 0x1024200100150040L, 0x6410100080080084L,
+        0x0090080100100500L, 0x1042010200100408L, 0x00C0010400900802L, 0x1140108200110044L,
+        0x0080004004C02000L, 0x0000401000402000L, 0x4020090041001220L, 0x0438060880801000L,
+        0x1100100801000500L, 0x0001000823000400L, 0x0000100104000248L, 0x0300008402000041L,
+        0x1010401020818008L, 0x80112010014E4000L, 0x0000200100410010L, 0x8090010410210008L,
+        0x044C080100050011L, 0x1324000810020200L, 0x000A000401020008L, 0x1200168400620009L,
+        0x0280304008800080L, 0x8102028A48210200L, 0x0005412001001100L, 0x0800100080080280L,
+        0x0000880080840280L, 0x0001800400020180L, 0x0000011210C80400L, 0x4000800100006180L,
+        0x0045004882013022L, 0x4000804004122301L, 0x400850C900200045L, 0x04930008A0849001L,
+        0xA80200508C20084EL, 0x4003000400020801L, 0x0000009022080124L, 0x0024010084003042L
+    };
+
+    private static final long[] BISHOP_MAGICS = {
+        0x8A84811C04040048L, 0x0008811802004001L, 0x0008820042004100L, 0x2F04440080210007L,
+        0x4411104000012100L, 0x0019018840030100L, 0x22C202100208C402L, 0x3000805802012000L,
+        0x200022181002A880L, 0xCA10208102020042L, 0x000004040C084010L, 0x0043080A00219800L,
+        0x3000062110020321L, 0x0204210108C00002L, 0x8002890101202082L, 0x0000110401044300L,
+        0x0004400808104430L, 0x6009503010209080L, 0x880C040808081210L, 0x0048200444010002L,
+        0x0150800408A00020L, 0x8081002600552440L, 0x8051008488080273L, 0x0119A0060C822810L,
+        0x8120080010900112L, 0x0808820020023A08L, 0x0012081831004400L, 0x0040044064010020L,
+        0x4001001001004030L, 0x012502080100A001L, 0xC00C050940809000L, 0xC01C084120804440L,
+        0x041010300A290280L, 0x8001010840600801L, 0x090C280100080A01L, 0x0840020080180080L,
+        0x0408020400201010L, 0x2392100101020880L, 0x000404044010A800L, 0x1088004480405210L,
+        0x000A101008408480L, 0x005080849002A002L, 0x1160201410000204L, 0x0040854200880800L,
+        0x000464090C001200L, 0x71024830010109A0L, 0x416008A08D041080L, 0x000800810201A848L,
+        0x020401188804040CL, 0x0200808801500000L, 0x0400010080900030L, 0x8000081084041080L,
+        0x341064100A1A0243L, 0x0080200284284040L, 0x0040449104310800L, 0x00100A0250420910L,
+        0x0001008050021004L, 0x0000610401240200L, 0x0006040021080800L, 0x8001900184208810L,
+        0x8111001161242400L, 0x9008000508102100L, 0x0058410544008200L, 0x8940810801010820L
+    };
+
+    private static final int[][] ROOK_DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] ROOK_ATTACKS;
+    private static final long[] BISHOP_ATTACKS;
+
+    static {
+        ROOK_ATTACKS = new long[init(ROOK_DIRECTIONS, ROOK_MAGICS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS, null)];
+        BISHOP_ATTACKS = new long[init(BISHOP_DIRECTIONS, BISHOP_MAGICS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS, null)];
+        init(ROOK_DIRECTIONS, ROOK_MAGICS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS, ROOK_ATTACKS);
+        init(BISHOP_DIRECTIONS, BISHOP_MAGICS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS, BISHOP_ATTACKS);
+    }
+
+    private Magic() {}
+
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_ATTACKS[ROOK_OFFSETS[square] + (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_ATTACKS[BISHOP_OFFSETS[square] + (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Fills in the masks, shifts and offsets for one slider type and, when a table is given, every
+     *      attack set reachable through each square's magic.
+     * @return the total number of table entries needed across all 64 squares
+     */
+    private static int init(int[][] directions, long[] magics, long[] masks, int[] shifts, int[] offsets, long[] table) {
+        int offset = 0;
+        for (int square = 0; square < 64; ++square) {
+            long mask = slide(square, 0L, directions, true);
+            int bits = Long.bitCount(mask);
+            masks[square] = mask;
+            shifts[square] = 64 - bits;
+            offsets[square] = offset;
+            if (table != null) {
+                // enumerate every subset of the mask (carry-rippler)
+                long subset = 0L;
+                do {
+                    int index = (int) ((subset * magics[square]) >>> shifts[square]);
+                    table[offset + index] = slide(square, subset, directions, false);
+                    subset = (subset - mask) & mask;
+                } while (subset != 0L);
+            }
+            offset += 1 << bits;
+        }
+        return offset;
+    }
+
+    /**
+     * Walks each ray from a square until it leaves the board or hits an occupied square. As a
+     *      mask the last square before the edge is left out, since it never blocks anything.
+     */
+    private static long slide(int square, long occupied, int[][] directions, boolean mask) {
+        long result = 0L;
+        int row = square / 8, col = square % 8;
+        for (int[] direction : directions) {
+            int r = row + direction[0], c = col + direction[1];
+            while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                if (mask && (r + direction[0] < 0 || r + direction[0] > 7 || c + direction[1] < 0 || c + direction[1] > 7))
+                    break;
+                long bit = 1L << (r * 8 + c);
+                result |= bit;
+                if ((occupied & bit) != 0)
+                    break;
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return result;
+    }
+}
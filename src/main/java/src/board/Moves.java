@@ -0,0 +1,156 @@
+package src.board;
+
+import src.Location;
+import src.Move;
+import src.piece.Bishop;
+import src.piece.King;
+import src.piece.Knight;
+import src.piece.Pawn;
+import src.piece.Piece;
+import src.piece.Queen;
+import src.piece.Rook;
+import java.awt.Color;
+
+/**
+ * Packed 32-bit move encoding used by the search so that generating and ordering moves does not
+ *      create Move, Location or Piece objects. A move is laid out as
+ *      from (6 bits) | to (6) | moving piece (3) | captured piece (3) | promotion (3) | flags (3),
+ *      with piece types taken from the Bitboard piece constants. Moves are only turned back into
+ *      src.Move objects at the SmartPlayer boundary.
+ */
+public final class Moves {
+    public static final int NONE = 0;
+    public static final int MAX_MOVES = 256;
+
+    public static final int DOUBLE_PUSH = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLE = 4;
+
+    private static final int TO_SHIFT = 6;
+    private static final int PIECE_SHIFT = 12;
+    private static final int CAPTURED_SHIFT = 15;
+    private static final int PROMOTION_SHIFT = 18;
+    private static final int FLAGS_SHIFT = 21;
+
+    private Moves() {}
+
+    public static int encode(int from, int to, int piece, int captured, int promotion, int flags) {
+        return from | (to << TO_SHIFT) | (piece << PIECE_SHIFT) | (captured << CAPTURED_SHIFT) | (promotion << PROMOTION_SHIFT) | (flags << FLAGS_SHIFT);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & 0x3F;
+    }
+
+    public static int piece(int move) {
+        return (move >>> PIECE_SHIFT) & 0x7;
+    }
+
+    public static int captured(int move) {
+        return (move >>> CAPTURED_SHIFT) & 0x7;
+    }
+
+    public static int promotion(int move) {
+        return (move >>> PROMOTION_SHIFT) & 0x7;
+    }
+
+    public static int flags(int move) {
+        return (move >>> FLAGS_SHIFT) & 0x7;
+    }
+
+    public static boolean isCapture(int move) {
+        return captured(move) != NONE;
+    }
+
+    /**
+     * Converts a packed move back into a Move on the game board, using the piece that actually
+     *      stands on the source square and the piece it captures. Move has no promotion piece and
+     *      the game board promotes to a queen, so underpromotions must not be passed here.
+     * @param move the packed move
+     * @param board the game board the move is played on
+     * @return type Move the equivalent move on the game board
+     */
+    public static Move toMove(int move, Board board) {
+        Location source = new Location(from(move) / 8, from(move) % 8);
+        Location destination = new Location(to(move) / 8, to(move) % 8);
+        return new Move(board.get(source), destination);
+    }
+
+    /**
+     * Converts a packed move into a Move using a piece created from a bitboard, for moves that are
+     *      not played on the game board such as the rest of a principal variation.
+     * @param move the packed move
+     * @param board the bitboard of the position the move is played in
+     * @return type Move the equivalent move
+     */
+    public static Move toMove(int move, Bitboard board) {
+        Location source = new Location(from(move) / 8, from(move) % 8);
+        Location destination = new Location(to(move) / 8, to(move) % 8);
+        Color color = board.colorAt(from(move)) == Bitboard.WHITE ? Color.WHITE : Color.BLACK;
+        return new Move(createPiece(piece(move), color), source, destination);
+    }
+
+    // a detached piece of a Bitboard piece type, not placed on any game board
+    private static Piece createPiece(int piece, Color color) {
+        switch (piece) {
+            case Bitboard.PAWN: return new Pawn(color, null);
+            case Bitboard.KNIGHT: return new Knight(color, null);
+            case Bitboard.BISHOP: return new Bishop(color, null);
+            case Bitboard.ROOK: return new Rook(color, null);
+            case Bitboard.QUEEN: return new Queen(color, null);
+            default: return new King(color, null);
+        }
+    }
+
+    /**
+     * Packs a Move from the game board, reading the captured piece from the bitboard. A pawn
+     *      reaching the last rank promotes to a queen, since Move carries no promotion piece.
+     * @param move the move to pack
+     * @param board the bitboard of the position the move is played in
+     * @return type int the packed move
+     */
+    public static int fromMove(Move move, Bitboard board) {
+        int from = board.index(move.getSource());
+        int to = board.index(move.getDestination());
+        int piece = pieceType(move.getPiece());
+        int captured = board.pieceAt(to);
+        int promotion = (piece == Bitboard.PAWN && (to < 8 || to >= 56)) ? Bitboard.QUEEN : NONE;
+        int flags = (piece == Bitboard.PAWN && Math.abs(to - from) == 16) ? DOUBLE_PUSH : 0;
+        if (piece == Bitboard.KING && Math.abs(to - from) == 2)
+            flags = CASTLE;
+        if (piece == Bitboard.PAWN && to == board.enPassant && (to - from) % 8 != 0) {
+            captured = Bitboard.PAWN;
+            flags = EN_PASSANT;
+        }
+        return encode(from, to, piece, captured, promotion, flags);
+    }
+
+    public static int pieceType(Piece piece) {
+        if (piece instanceof Pawn)
+            return Bitboard.PAWN;
+        else if (piece instanceof Knight)
+            return Bitboard.KNIGHT;
+        else if (piece instanceof Bishop)
+            return Bitboard.BISHOP;
+        else if (piece instanceof Rook)
+            return Bitboard.ROOK;
+        else if (piece instanceof Queen)
+            return Bitboard.QUEEN;
+        else if (piece instanceof King)
+            return Bitboard.KING;
+        return NONE;
+    }
+
+    public static String toString(int move) {
+        String squares = square(from(move)) + square(to(move));
+        return promotion(move) == NONE ? squares : squares + " nbrq".charAt(promotion(move) - 1);
+    }
+
+    private static String square(int square) {
+        return "" + (char) ('a' + square % 8) + (8 - square / 8);
+    }
+}
@@ -0,0 +1,205 @@
+package src.board;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Move generator verification and speed test. perft counts the leaf nodes of the legal move tree
+ *      to a fixed depth, which for the reference positions must equal the published counts. The
+ *      last ply is bulk counted from the length of the move list instead of playing every move,
+ *      repeated subtrees can be looked up in a PerftTable, and the root moves can be split across
+ *      a ForkJoinPool. Every root move of a split search works on its own copy of the position.
+ */
+public final class Perft {
+    private static final int HASH_SIZE = 64; // MB
+
+    public static final String[] POSITIONS = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+    };
+
+    // the expected leaf nodes of every position of POSITIONS, starting at depth 1
+    public static final long[][] NODES = {
+        {20L, 400L, 8902L, 197281L, 4865609L},
+        {48L, 2039L, 97862L, 4085603L},
+        {14L, 191L, 2812L, 43238L, 674624L},
+        {6L, 264L, 9467L, 422333L},
+        {44L, 1486L, 62379L, 2103487L},
+        {46L, 2079L, 89890L, 3894594L},
+    };
+
+    private Perft() {}
+
+    /**
+     * Counts the leaf nodes of a position on the calling thread without a table.
+     * @param board the position to count from, left unchanged
+     * @param depth the number of plies to count to
+     * @return type long the number of leaf nodes
+     */
+    public static long perft(Bitboard board, int depth) {
+        return perft(board, depth, null, null);
+    }
+
+    /**
+     * Counts the leaf nodes of a position.
+     * @param board the position to count from, left unchanged
+     * @param depth the number of plies to count to
+     * @param table the table to cache subtree counts in, or null
+     * @param pool the pool to split the root moves across, or null to count on the calling thread
+     * @return type long the number of leaf nodes
+     */
+    public static long perft(Bitboard board, int depth, PerftTable table, ForkJoinPool pool) {
+        if (depth <= 0)
+            return 1L;
+        long nodes = 0L;
+        for (long count : split(board, depth, table, pool))
+            nodes += count;
+        return nodes;
+    }
+
+    /**
+     * Counts the leaf nodes below every root move and prints them, one move per line followed by
+     *      the total, so that a wrong count can be traced down to the move generation that causes it.
+     * @param board the position to count from, left unchanged
+     * @param depth the number of plies to count to, at least 1
+     * @param table the table to cache subtree counts in, or null
+     * @param pool the pool to split the root moves across, or null to count on the calling thread
+     * @param out the stream to print to
+     * @return type long the number of leaf nodes
+     */
+    public static long divide(Bitboard board, int depth, PerftTable table, ForkJoinPool pool, PrintStream out) {
+        int[] moves = new int[Moves.MAX_MOVES];
+        int end = board.generateLegalMoves(moves, 0, false);
+        long[] counts = split(board, depth, table, pool);
+        long nodes = 0L;
+        for (int i = 0; i < end; ++i) {
+            out.println(Moves.toString(moves[i]) + ": " + counts[i]);
+            nodes += counts[i];
+        }
+        out.println();
+        out.println("Moves: " + end);
+        out.println("Nodes: " + nodes);
+        return nodes;
+    }
+
+    // the leaf nodes below every root move, in generation order
+    private static long[] split(Bitboard board, int depth, PerftTable table, ForkJoinPool pool) {
+        int[] moves = new int[Moves.MAX_MOVES];
+        int end = board.generateLegalMoves(moves, 0, false);
+        long[] counts = new long[end];
+        if (pool == null) {
+            int[][] buffers = new int[depth][Moves.MAX_MOVES];
+            for (int i = 0; i < end; ++i) {
+                board.makeMove(moves[i]);
+                counts[i] = count(board, depth - 1, buffers, table);
+                board.unmakeMove(moves[i]);
+            }
+            return counts;
+        }
+
+        RootMove[] tasks = new RootMove[end];
+        for (int i = 0; i < end; ++i)
+            tasks[i] = new RootMove(board.processMove(moves[i]), depth - 1, table);
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+        for (int i = 0; i < end; ++i)
+            counts[i] = tasks[i].join();
+        return counts;
+    }
+
+    private static long count(Bitboard board, int depth, int[][] buffers, PerftTable table) {
+        if (depth == 0)
+            return 1L;
+        int[] moves = buffers[depth];
+        if (depth == 1)
+            return board.generateLegalMoves(moves, 0, false); // bulk counting
+
+        long key = 0L;
+        if (table != null) {
+            key = board.hash();
+            long nodes = table.probe(key, depth);
+            if (nodes >= 0L)
+                return nodes;
+        }
+        int end = board.generateLegalMoves(moves, 0, false);
+        long nodes = 0L;
+        for (int i = 0; i < end; ++i) {
+            board.makeMove(moves[i]);
+            nodes += count(board, depth - 1, buffers, table);
+            board.unmakeMove(moves[i]);
+        }
+        if (table != null)
+            table.store(key, depth, nodes);
+        return nodes;
+    }
+
+    private static class RootMove extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Bitboard board;
+        private final int depth;
+        private final PerftTable table;
+
+        RootMove(Bitboard board, int depth, PerftTable table) {
+            this.board = board;
+            this.depth = depth;
+            this.table = table;
+        }
+
+        @Override
+        protected Long compute() {
+            return count(this.board, this.depth, new int[this.depth + 1][Moves.MAX_MOVES], this.table);
+        }
+    }
+
+    /**
+     * Runs the reference positions to their deepest known count, first on one thread without a
+     *      table to measure the raw generator speed, then split across every core with a table,
+     *      and reports whether both counts match. With a depth and a FEN as arguments it prints
+     *      the divide of that position instead.
+     * @param args nothing, or a depth followed by a FEN
+     */
+    public static void main(String[] args) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        if (args.length > 1) {
+            String fen = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+            divide(new Bitboard().fromFEN(fen), Integer.parseInt(args[0]), new PerftTable(HASH_SIZE), pool, System.out);
+            return;
+        }
+
+        long totalNodes = 0L;
+        long totalTime = 0L;
+        boolean passed = true;
+        for (int i = 0; i < POSITIONS.length; ++i) {
+            Bitboard board = new Bitboard().fromFEN(POSITIONS[i]);
+            int depth = NODES[i].length;
+            long expected = NODES[i][depth - 1];
+
+            long time = System.nanoTime();
+            long nodes = perft(board, depth);
+            time = System.nanoTime() - time;
+            long splitNodes = perft(board, depth, new PerftTable(HASH_SIZE), pool);
+            boolean ok = nodes == expected && splitNodes == expected;
+            passed &= ok;
+            totalNodes += nodes;
+            totalTime += time;
+            System.out.println((ok ? "OK   " : "FAIL ") + "depth " + depth + " " + nodes + " nodes (split " + splitNodes + ", expected " + expected + ") "
+                + time / 1000000 + "ms " + String.format("%.1f", nodes * 1000.0 / time) + " Mnps  " + POSITIONS[i]);
+        }
+        System.out.println("---------------------------------");
+        System.out.println((passed ? "All positions match" : "MISMATCH") + ", " + totalNodes + " nodes in " + totalTime / 1000000 + "ms, "
+            + String.format("%.1f", totalNodes * 1000.0 / totalTime) + " Mnps");
+        System.out.println("---------------------------------");
+    }
+}
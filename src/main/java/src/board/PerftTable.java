@@ -0,0 +1,59 @@
+package src.board;
+
+import java.util.Arrays;
+
+/**
+ * A cache of perft subtree counts keyed by position and depth, shared by every perft worker. Like
+ *      the transposition table, an entry is the key XORed with the data followed by the data, so
+ *      a torn write from a concurrent store is rejected on probe. The data packs
+ *      nodes (56 bits) | depth (8), and every slot is always replaced.
+ */
+public class PerftTable {
+    private static final int SLOT_LONGS = 2;
+    private static final int SLOT_BYTES = SLOT_LONGS * Long.BYTES;
+    private static final int MAX_SLOTS = 1 << 28;
+
+    private final long[] table;
+    private final int slotMask;
+
+    /**
+     * Creates an empty table of at most the given size, rounded down to a power of two slots.
+     * @param megabytes the size of the table in megabytes
+     */
+    public PerftTable(int megabytes) {
+        if (megabytes <= 0)
+            throw new IllegalArgumentException("Hash size must be positive: " + megabytes);
+        int slots = (int) Long.highestOneBit(Math.min((long) megabytes * 1024 * 1024 / SLOT_BYTES, MAX_SLOTS));
+        this.table = new long[slots * SLOT_LONGS];
+        this.slotMask = slots - 1;
+    }
+
+    public void clear() {
+        Arrays.fill(this.table, 0L);
+    }
+
+    /**
+     * Looks up the node count of a subtree.
+     * @param key the Zobrist key of the position
+     * @param depth the depth the subtree was counted to
+     * @return type long the number of leaf nodes, or -1 if the subtree is not stored
+     */
+    public long probe(long key, int depth) {
+        int index = this.index(key);
+        long data = this.table[index + 1];
+        if ((this.table[index] ^ data) != key || (data & 0xFF) != depth)
+            return -1L;
+        return data >>> 8;
+    }
+
+    public void store(long key, int depth, long nodes) {
+        int index = this.index(key);
+        long data = (nodes << 8) | depth;
+        this.table[index] = key ^ data;
+        this.table[index + 1] = data;
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & this.slotMask) * SLOT_LONGS;
+    }
+}
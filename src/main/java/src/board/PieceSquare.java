@@ -0,0 +1,137 @@
+package src.board;
+
+/**
+ * Middle game and end game values of every piece on every square, material included, that
+ *      Bitboard sums up incrementally as pieces are toggled. Values are from white's point of
+ *      view and negated for black, so a position's running totals are white's advantage. The
+ *      tables are written for white with the eighth rank first, the same order as the square
+ *      numbering, and black reads them vertically mirrored. The game phase counts the minor
+ *      and major pieces left, from MAX_PHASE at the start down to 0 with only kings and pawns.
+ */
+public final class PieceSquare {
+    public static final int MAX_PHASE = 24;
+
+    // indexed by Bitboard piece type
+    public static final int[] PHASE_WEIGHTS = {0, 0, 1, 1, 2, 4, 0};
+    private static final int[] MIDDLEGAME_VALUES = {0, 100, 320, 330, 500, 1200, 0};
+    private static final int[] ENDGAME_VALUES = {0, 120, 300, 330, 520, 1150, 0};
+
+    // [Bitboard.WHITE | Bitboard.BLACK][piece type][square]
+    public static final int[][][] MIDDLEGAME = new int[2][7][64];
+    public static final int[][][] ENDGAME = new int[2][7][64];
+
+    private static final int[] PAWN = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         10,  10,  20,  30,  30,  20,  10,  10,
+          5,   5,  10,  25,  25,  10,   5,   5,
+          0,   0,   0,  20,  20,   0,   0,   0,
+          5,  -5, -10,   0,   0, -10,  -5,   5,
+          5,  10,  10, -20, -20,  10,  10,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+    };
+
+    private static final int[] PAWN_ENDGAME = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         15,  15,  15,  15,  15,  15,  15,  15,
+          5,   5,   5,   5,   5,   5,   5,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0,
+    };
+
+    private static final int[] KNIGHT = {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50,
+    };
+
+    private static final int[] BISHOP = {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20,
+    };
+
+    private static final int[] ROOK = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+          5,  10,  10,  10,  10,  10,  10,   5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+          0,   0,   0,   5,   5,   0,   0,   0,
+    };
+
+    private static final int[] QUEEN = {
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+    };
+
+    private static final int[] KING = {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20,
+    };
+
+    private static final int[] KING_ENDGAME = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50,
+    };
+
+    static {
+        int[][] middlegame = {null, PAWN, KNIGHT, BISHOP, ROOK, QUEEN, KING};
+        int[][] endgame = {null, PAWN_ENDGAME, KNIGHT, BISHOP, ROOK, QUEEN, KING_ENDGAME};
+        for (int piece = Bitboard.PAWN; piece <= Bitboard.KING; ++piece) {
+            for (int square = 0; square < 64; ++square) {
+                MIDDLEGAME[Bitboard.WHITE][piece][square] = MIDDLEGAME_VALUES[piece] + middlegame[piece][square];
+                ENDGAME[Bitboard.WHITE][piece][square] = ENDGAME_VALUES[piece] + endgame[piece][square];
+                MIDDLEGAME[Bitboard.BLACK][piece][square ^ 56] = -MIDDLEGAME[Bitboard.WHITE][piece][square];
+                ENDGAME[Bitboard.BLACK][piece][square ^ 56] = -ENDGAME[Bitboard.WHITE][piece][square];
+            }
+        }
+    }
+
+    private PieceSquare() {}
+
+    /**
+     * Blends a middle game and an end game score by the game phase.
+     * @param middlegame the score when every piece is on the board
+     * @param endgame the score with only kings and pawns left
+     * @param phase the game phase, clamped to MAX_PHASE
+     * @return type int the tapered score
+     */
+    public static int taper(int middlegame, int endgame, int phase) {
+        phase = Math.min(phase, MAX_PHASE);
+        return (middlegame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+    }
+}
@@ -0,0 +1,104 @@
+package src.board;
+
+/**
+ * Static, precomputed attack and geometry tables shared by Bitboard and Score. Every table is
+ *      built once when the class is loaded and indexed by the same square numbering as Bitboard
+ *      (row * 8 + col, row 0 being the eighth rank), so nothing here is rebuilt per position.
+ */
+public final class Tables {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = 0x8080808080808080L;
+
+    // indexed by column, a-file first
+    public static final long[] FILES = new long[8];
+    public static final long[] ADJACENT_FILES = new long[8];
+
+    // indexed by row, eighth rank first
+    public static final long[] ROWS = new long[8];
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+
+    // [Bitboard.WHITE | Bitboard.BLACK][square]
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+    public static final long[][] PASSED_PAWN_SPANS = new long[2][64];
+    public static final long[][] KING_ZONES = new long[2][64];
+
+    // squares strictly between two aligned squares, and the full line through them
+    public static final long[][] BETWEEN = new long[64][64];
+    public static final long[][] LINE = new long[64][64];
+
+    private static final int[][] KNIGHT_OFFSETS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    private static final int[][] KING_OFFSETS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+
+    static {
+        for (int i = 0; i < 8; ++i) {
+            FILES[i] = FILE_A << i;
+            ROWS[i] = 0xFFL << (8 * i);
+        }
+        for (int i = 0; i < 8; ++i) {
+            ADJACENT_FILES[i] = (i > 0 ? FILES[i - 1] : 0L) | (i < 7 ? FILES[i + 1] : 0L);
+        }
+
+        for (int square = 0; square < 64; ++square) {
+            int row = square / 8, col = square % 8;
+            KNIGHT_ATTACKS[square] = offsets(row, col, KNIGHT_OFFSETS);
+            KING_ATTACKS[square] = offsets(row, col, KING_OFFSETS);
+            PAWN_ATTACKS[Bitboard.WHITE][square] = offsets(row, col, new int[][] {{-1, -1}, {-1, 1}});
+            PAWN_ATTACKS[Bitboard.BLACK][square] = offsets(row, col, new int[][] {{1, -1}, {1, 1}});
+
+            long span = FILES[col] | ADJACENT_FILES[col];
+            long ahead = 0L, behind = 0L;
+            for (int r = 0; r < row; ++r) ahead |= ROWS[r];
+            for (int r = row + 1; r < 8; ++r) behind |= ROWS[r];
+            // white pawns advance towards row 0, black pawns towards row 7
+            PASSED_PAWN_SPANS[Bitboard.WHITE][square] = span & ahead;
+            PASSED_PAWN_SPANS[Bitboard.BLACK][square] = span & behind;
+
+            long zone = KING_ATTACKS[square] | (1L << square);
+            KING_ZONES[Bitboard.WHITE][square] = zone | (row > 1 ? (zone & ROWS[row - 1]) >>> 8 : 0L);
+            KING_ZONES[Bitboard.BLACK][square] = zone | (row < 6 ? (zone & ROWS[row + 1]) << 8 : 0L);
+        }
+
+        for (int from = 0; from < 64; ++from) {
+            long rook = Magic.rookAttacks(from, 0L);
+            long bishop = Magic.bishopAttacks(from, 0L);
+            for (int to = 0; to < 64; ++to) {
+                if (from == to)
+                    continue;
+                long toMask = 1L << to;
+                if ((rook & toMask) != 0) {
+                    BETWEEN[from][to] = Magic.rookAttacks(from, toMask) & Magic.rookAttacks(to, 1L << from);
+                    LINE[from][to] = (rook & Magic.rookAttacks(to, 0L)) | (1L << from) | toMask;
+                } else if ((bishop & toMask) != 0) {
+                    BETWEEN[from][to] = Magic.bishopAttacks(from, toMask) & Magic.bishopAttacks(to, 1L << from);
+                    LINE[from][to] = (bishop & Magic.bishopAttacks(to, 0L)) | (1L << from) | toMask;
+                }
+            }
+        }
+    }
+
+    private Tables() {}
+
+    /**
+     * Returns every square attacked by a set of pawns of one color at once.
+     * @param white true for white pawns, which attack towards row 0
+     * @param pawns the pawns to attack from
+     * @return type long the squares the pawns attack
+     */
+    public static long pawnAttacks(boolean white, long pawns) {
+        if (white)
+            return ((pawns & ~FILE_A) >>> 9) | ((pawns & ~FILE_H) >>> 7);
+        return ((pawns & ~FILE_A) << 7) | ((pawns & ~FILE_H) << 9);
+    }
+
+    private static long offsets(int row, int col, int[][] offsets) {
+        long result = 0L;
+        for (int[] offset : offsets) {
+            int r = row + offset[0], c = col + offset[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8)
+                result |= 1L << (r * 8 + c);
+        }
+        return result;
+    }
+}
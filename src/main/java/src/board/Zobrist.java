@@ -0,0 +1,53 @@
+package src.board;
+
+import java.util.Random;
+
+/**
+ * Zobrist keys used to identify positions in O(1). Every key is drawn once from a fixed seed so
+ *      that hashes are reproducible between runs, which keeps stored tables and debugging output
+ *      comparable. Piece keys are indexed by color, Bitboard piece type and square, material keys
+ *      by color, piece type and piece count.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x5A0B215EL;
+
+    // [Bitboard.WHITE | Bitboard.BLACK][piece type][square]
+    public static final long[][][] PIECES = new long[2][7][64];
+    public static final long[][][] MATERIAL = new long[2][7][65];
+    public static final long[] CASTLING = new long[16];
+    public static final long[] EN_PASSANT = new long[8]; // by column
+    public static final long SIDE;
+
+    static {
+        Random random = new Random(SEED);
+        for (int color = 0; color < 2; ++color) {
+            for (int piece = Bitboard.PAWN; piece <= Bitboard.KING; ++piece) {
+                for (int square = 0; square < 64; ++square)
+                    PIECES[color][piece][square] = random.nextLong();
+                for (int count = 0; count < 65; ++count)
+                    MATERIAL[color][piece][count] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLING.length; ++i)
+            CASTLING[i] = random.nextLong();
+        for (int i = 0; i < EN_PASSANT.length; ++i)
+            EN_PASSANT[i] = random.nextLong();
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {}
+
+    /**
+     * Returns the key of the piece placement of one piece set, for computing a key from scratch.
+     * @param pieces the squares occupied by the pieces
+     * @param color Bitboard.WHITE or Bitboard.BLACK
+     * @param piece the Bitboard piece type
+     * @return type long the XOR of the keys of every piece
+     */
+    public static long pieces(long pieces, int color, int piece) {
+        long key = 0L;
+        for (; pieces != 0L; pieces &= pieces - 1)
+            key ^= PIECES[color][piece][Long.numberOfTrailingZeros(pieces)];
+        return key;
+    }
+}
@@ -0,0 +1,95 @@
+package src.eval;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A direct-mapped cache of static evaluations keyed by the piece placement hash, shared by every
+ *      search thread. Quiescence evaluates every stand-pat, and transpositions reach the same
+ *      positions again and again, so a hit saves running every evaluation term. The evaluation
+ *      depends on the pieces alone, so positions differing only in side to move, castling
+ *      rights or en passant share an entry. Each slot is a single long: the upper 48 bits of
+ *      the key above a 16-bit score from white's point of view. A long is written at once, so
+ *      a slot is never torn by concurrent stores and needs no check word or lock; a newer
+ *      position simply replaces the one in its slot.
+ */
+public class EvalCache {
+    public static final int MISS = Integer.MIN_VALUE;
+
+    private static final long KEY_MASK = 0xFFFFFFFFFFFF0000L;
+    private static final int MAX_SLOTS = 1 << 28;
+
+    private final long[] table;
+    private final int slotMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+
+    /**
+     * Creates an empty cache of at most the given size, rounded down to a power of two slots.
+     * @param megabytes the size of the cache in megabytes
+     */
+    public EvalCache(int megabytes) {
+        if (megabytes <= 0)
+            throw new IllegalArgumentException("Eval cache size must be positive: " + megabytes);
+        int slots = (int) Long.highestOneBit(Math.min((long) megabytes * 1024 * 1024 / Long.BYTES, MAX_SLOTS));
+        this.table = new long[slots];
+        this.slotMask = slots - 1;
+    }
+
+    public void clear() {
+        Arrays.fill(this.table, 0L);
+        this.resetStats();
+    }
+
+    public void resetStats() {
+        this.hits.reset();
+        this.probes.reset();
+    }
+
+    /**
+     * Looks up the evaluation of a position.
+     * @param key the piece placement key of the position
+     * @return type int the stored score, or MISS
+     */
+    public int probe(long key) {
+        this.probes.increment();
+        long entry = this.table[(int) key & this.slotMask];
+        if ((entry & KEY_MASK) != (key & KEY_MASK))
+            return MISS;
+        this.hits.increment();
+        return (short) entry;
+    }
+
+    /**
+     * Stores the evaluation of a position, scores that do not fit 16 bits are not cached.
+     * @param key the piece placement key of the position
+     * @param score the static evaluation
+     */
+    public void store(long key, int score) {
+        if (score != (short) score)
+            return;
+        this.table[(int) key & this.slotMask] = (key & KEY_MASK) | (score & 0xFFFFL);
+    }
+
+    /**
+     * Returns the number of evaluations answered from the cache, each one a full evaluation saved.
+     * @return type long the hits since the last reset
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getProbes() {
+        return this.probes.sum();
+    }
+
+    /**
+     * Returns the share of probes that found their position.
+     * @return type double between 0 and 1, 0 before the first probe
+     */
+    public double hitRate() {
+        long probes = this.probes.sum();
+        return probes == 0L ? 0.0 : (double) this.hits.sum() / probes;
+    }
+}
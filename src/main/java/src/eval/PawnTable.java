@@ -0,0 +1,107 @@
+package src.eval;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of pawn structure evaluations keyed by the pawn-only Zobrist key, shared by every
+ *      search thread. Pawns move rarely compared to the other pieces, so most evaluations find
+ *      their structure here. A slot is a check long followed by the data: the structure score,
+ *      the passed pawns and the pawn attack spans of both sides. The check is the key XORed with
+ *      every data long, so a slot torn by a concurrent store is rejected on probe.
+ */
+public class PawnTable {
+    private static final int SLOT_LONGS = 6;
+    private static final int SLOT_BYTES = SLOT_LONGS * Long.BYTES;
+    private static final int MAX_SLOTS = 1 << 26;
+
+    private final long[] table;
+    private final int slotMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+
+    /**
+     * The cached evaluation of one pawn structure, filled in by probe or by the evaluator.
+     */
+    public static class Entry {
+        public int score; // white's structure score minus black's
+        public final long[] passed = new long[2]; // indexed by Bitboard.WHITE | Bitboard.BLACK
+        public final long[] attackSpans = new long[2]; // every square a side's pawns can ever attack
+    }
+
+    /**
+     * Creates an empty table of at most the given size, rounded down to a power of two slots.
+     * @param megabytes the size of the table in megabytes
+     */
+    public PawnTable(int megabytes) {
+        if (megabytes <= 0)
+            throw new IllegalArgumentException("Pawn hash size must be positive: " + megabytes);
+        int slots = (int) Long.highestOneBit(Math.min((long) megabytes * 1024 * 1024 / SLOT_BYTES, MAX_SLOTS));
+        this.table = new long[slots * SLOT_LONGS];
+        this.slotMask = slots - 1;
+    }
+
+    public void clear() {
+        Arrays.fill(this.table, 0L);
+        this.hits.reset();
+        this.probes.reset();
+    }
+
+    /**
+     * Looks up a pawn structure.
+     * @param key the pawn Zobrist key of the position
+     * @param entry filled in with the stored evaluation on a hit
+     * @return type boolean true if the structure was stored
+     */
+    public boolean probe(long key, Entry entry) {
+        this.probes.increment();
+        int index = this.index(key);
+        long score = this.table[index + 1];
+        long whitePassed = this.table[index + 2];
+        long blackPassed = this.table[index + 3];
+        long whiteSpans = this.table[index + 4];
+        long blackSpans = this.table[index + 5];
+        if ((this.table[index] ^ score ^ whitePassed ^ blackPassed ^ whiteSpans ^ blackSpans) != key)
+            return false;
+        this.hits.increment();
+        entry.score = (int) score;
+        entry.passed[0] = whitePassed;
+        entry.passed[1] = blackPassed;
+        entry.attackSpans[0] = whiteSpans;
+        entry.attackSpans[1] = blackSpans;
+        return true;
+    }
+
+    public void store(long key, Entry entry) {
+        int index = this.index(key);
+        long score = entry.score & 0xFFFFFFFFL;
+        this.table[index] = key ^ score ^ entry.passed[0] ^ entry.passed[1] ^ entry.attackSpans[0] ^ entry.attackSpans[1];
+        this.table[index + 1] = score;
+        this.table[index + 2] = entry.passed[0];
+        this.table[index + 3] = entry.passed[1];
+        this.table[index + 4] = entry.attackSpans[0];
+        this.table[index + 5] = entry.attackSpans[1];
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getProbes() {
+        return this.probes.sum();
+    }
+
+    /**
+     * Returns the share of probes that found their structure.
+     * @return type double between 0 and 1, 0 before the first probe
+     */
+    public double hitRate() {
+        long probes = this.probes.sum();
+        return probes == 0L ? 0.0 : (double) this.hits.sum() / probes;
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & this.slotMask) * SLOT_LONGS;
+    }
+}
@@ -1,18 +1,18 @@
 package src.eval;
 
 import org.deeplearning4j.nn.graph.ComputationGraph;
-import src.Move;
 import src.board.*;
-import src.piece.Bishop;
-import src.piece.Knight;
-import src.piece.Pawn;
-import src.piece.Piece;
-import src.piece.Queen;
-import src.piece.Rook;
 
 public class Score
 {
+    private static final int PAWN_HASH_SIZE = 2; // megabytes
+    private static final int EVAL_HASH_SIZE = 8; // megabytes
+
     public static ComputationGraph network;
+    public static PawnTable pawnTable = new PawnTable(PAWN_HASH_SIZE);
+    public static EvalCache evalCache = new EvalCache(EVAL_HASH_SIZE);
+
+    private static final ThreadLocal<PawnTable.Entry> PAWN_ENTRIES = ThreadLocal.withInitial(PawnTable.Entry::new);
 
     private static final int DOUBLED_PAWN_PENALTY = -15;
     private static final int ISOLATED_PAWN_PENALTY = -25;
@@ -24,6 +24,8 @@ public class Score
     private static final int ROOK_VALUE = 500;
     private static final int QUEEN_VALUE = 1200;
     private static final int KING_VALUE = 5000;
+    // indexed by Bitboard piece type, the king counts as 0 for exchanges
+    private static final int[] PIECE_VALUES = {0, PAWN_VALUE, KNIGHT_VALUE, BISHOP_VALUE, ROOK_VALUE, QUEEN_VALUE, 0};
     private static final int BISHOP_MOBILITY_VALUE = 3;
     private static final int KNIGHT_MOBILITY_VALUE = 3;
     private static final int ROOK_MOBILITY_VALUE = 5;
@@ -40,14 +42,35 @@ public class Score
     private static final int OPEN_SURROUND_PENALTY = -10;
     private static final int ROOK_OPEN_FILE = 30;
 
-    private static final long FILE_A = 0x0101010101010101L;
-    private static final long FILE_B = 0x0202020202020202L;
-    private static final long FILE_C = 0x0404040404040404L;
-    private static final long FILE_D = 0x0808080808080808L;
-    private static final long FILE_E = 0x1010101010101010L;
-    private static final long FILE_F = 0x2020202020202020L;
-    private static final long FILE_G = 0x4040404040404040L;
-    private static final long FILE_H = 0x8080808080808080L;
+    // positional terms of the evaluation, material and piece placement come with the board
+    public static final int BISHOP_PAIRS = 0;
+    public static final int EDGE_CONTROL = 1;
+    public static final int PIECE_DEVELOPMENT = 2;
+    public static final int KING_SAFETY = 3;
+    public static final int ROOK_OPEN_FILES = 4;
+    public static final int PAWN_STRUCTURE = 5;
+    public static final int OUTPOST_KNIGHTS = 6;
+    public static final int CENTER_CONTROL = 7;
+    public static final int MOBILITY = 8;
+    public static final int TERMS = 9;
+
+    // the order lazy evaluation computes the terms in, cheapest first, must list every term once
+    public static int[] termOrder = {BISHOP_PAIRS, EDGE_CONTROL, PIECE_DEVELOPMENT, KING_SAFETY, ROOK_OPEN_FILES, PAWN_STRUCTURE, OUTPOST_KNIGHTS, CENTER_CONTROL, MOBILITY};
+    // the most each term can move the score by either way with no more pieces of a type than a side
+    // starts with, indexed by term, left public so they can be tuned; smaller margins exit earlier
+    // but can return a bound on the wrong side of the score
+    public static int[] termMargins = {
+        BISHOP_PAIR_VALUE, // one pair
+        2 * -KNIGHT_EDGE_DEDUCT, // two knights on the edge
+        2 * DEVELOPMENT_KNIGHT_VALUE + 2 * DEVELOPMENT_BISHOP_VALUE, // all four minor pieces developed
+        5 * PAWN_SHIELD_SCORE - 3 * OPEN_SURROUND_PENALTY, // a full shield against an open king
+        2 * ROOK_OPEN_FILE, // two rooks on open files
+        8 * PASSED_PAWN_BONUS - 4 * ISOLATED_PAWN_PENALTY - 4 * DOUBLED_PAWN_PENALTY, // eight passed pawns against four isolated pairs
+        2 * KNIGHT_OUTPOST_VALUE, // two knights on outposts
+        4 * CENTER_CONTROL_VALUE + 4 * EXTENDED_CONTROL_VALUE, // every center square
+        26 * BISHOP_MOBILITY_VALUE + 16 * KNIGHT_MOBILITY_VALUE + 28 * ROOK_MOBILITY_VALUE + 27 * QUEEN_MOBILITY_VALUE, // every piece free
+    };
+
     private static final long RANK_2 = 0x000000000000FF00L;
     private static final long RANK_3 = 0x0000000000FF0000L;
     private static final long RANK_4 = 0x00000000FF000000L;
@@ -60,76 +83,201 @@ public class Score
     private static final long BLACK_PAWN_SHIELD_MASK = 0x00E6000000000000L; // e7, f7, g7
     private static final long WHITE_KING_SURROUND_MASK = 0x0000000000001C00L; // e1, f1, g1
     private static final long BLACK_KING_SURROUND_MASK = 0x001C000000000000L; // e8, f8, g8
-    private static final long[] FILES = {FILE_A, FILE_B, FILE_C, FILE_D, FILE_E, FILE_F, FILE_G, FILE_H};
 
     public static int networkScore(double[][][] bitboards)
     {
         return (int) (src.eval.Network.score(bitboards, network) * 100);
     }
 
+    /**
+     * Returns the static evaluation of a position from white's point of view, from the eval cache
+     *      when the position was evaluated before.
+     * @param board the position
+     * @return type int the score in centipawns
+     */
     public static int bitboardScore(Bitboard board) {
-        Bitboard moves = board.allMoves();
-        int material = scoreMaterial(board);
-        int position = scorePawnStructure(board) + scorePieceDevelopment(board) + scoreCenterControl(board, moves) + scoreRookOpenFiles(board) + scoreMobility(board) + scoreEdgeControl(board) + scoreBishopPairs(board) + scoreOutpostKnights(board);
-        int king = scoreKing(board) + scoreKingSafety(board);
-        return (material * 80 / 100) + position + king;
+        long key = board.pieceHash();
+        int score = evalCache.probe(key);
+        if (score == EvalCache.MISS) {
+            score = computeScore(board);
+            evalCache.store(key, score);
+        }
+        return score;
+    }
+
+    /**
+     * Returns the static evaluation of a position from the point of view of the side to move, or
+     *      a bound on it once the score is known to fall outside the window. The material and
+     *      piece placement kept by the board come first, then the positional terms in termOrder,
+     *      and the evaluation stops as soon as the margins of the terms left cannot bring the
+     *      score back inside the window. A side with a promoted piece beyond its starting set
+     *      can go past the margins, so such positions are always evaluated in full. Only
+     *      complete evaluations are cached.
+     * @param board the position
+     * @param alpha the lower end of the window
+     * @param beta the upper end of the window
+     * @return type int the score in centipawns, at most alpha or at least beta when cut short
+     */
+    public static int evaluate(Bitboard board, int alpha, int beta) {
+        int sign = board.moveWhite ? 1 : -1;
+        long key = board.pieceHash();
+        int score = evalCache.probe(key);
+        if (score != EvalCache.MISS)
+            return sign * score;
+
+        score = baseScore(board);
+        boolean lazy = !hasExtraPieces(board);
+        int remaining = 0;
+        for (int term : termOrder)
+            remaining += termMargins[term];
+        for (int term : termOrder) {
+            int bound = sign * score;
+            if (lazy && bound + remaining <= alpha)
+                return bound + remaining;
+            if (lazy && bound - remaining >= beta)
+                return bound - remaining;
+            score += scoreTerm(board, term);
+            remaining -= termMargins[term];
+        }
+        evalCache.store(key, score);
+        return sign * score;
+    }
+
+    private static int computeScore(Bitboard board) {
+        int score = baseScore(board);
+        for (int term = 0; term < TERMS; ++term)
+            score += scoreTerm(board, term);
+        return score;
+    }
+
+    // whether a side has more knights, bishops, rooks or queens than it starts with
+    private static boolean hasExtraPieces(Bitboard board) {
+        for (int color = Bitboard.WHITE; color <= Bitboard.BLACK; ++color) {
+            if (Long.bitCount(board.pieces(color, Bitboard.KNIGHT)) > 2 || Long.bitCount(board.pieces(color, Bitboard.BISHOP)) > 2
+                    || Long.bitCount(board.pieces(color, Bitboard.ROOK)) > 2 || Long.bitCount(board.pieces(color, Bitboard.QUEEN)) > 1)
+                return true;
+        }
+        return false;
+    }
+
+    // material and piece placement, kept by the board, and missing kings
+    private static int baseScore(Bitboard board) {
+        return (board.pieceSquareScore() * 80 / 100) + scoreKing(board);
+    }
+
+    static int scoreTerm(Bitboard board, int term) {
+        switch (term) {
+            case BISHOP_PAIRS: return scoreBishopPairs(board);
+            case EDGE_CONTROL: return scoreEdgeControl(board);
+            case PIECE_DEVELOPMENT: return scorePieceDevelopment(board);
+            case KING_SAFETY: return scoreKingSafety(board);
+            case ROOK_OPEN_FILES: return scoreRookOpenFiles(board);
+            case PAWN_STRUCTURE: return pawnEntry(board).score;
+            case OUTPOST_KNIGHTS: return scoreOutpostKnights(board, pawnEntry(board));
+            case CENTER_CONTROL: return scoreCenterControl(board, board.attackMap());
+            case MOBILITY: return scoreMobility(board, board.attackMap());
+            default: throw new IllegalArgumentException("Unknown evaluation term: " + term);
+        }
     }
 
     public static int scoreMaterial(Bitboard board) {
-        int whiteScore = Long.bitCount(board.wPawns) * PAWN_VALUE + Long.bitCount(board.wKnights) * KNIGHT_VALUE + Long.bitCount(board.wBishops) * BISHOP_VALUE + Long.bitCount(board.wRooks) * ROOK_VALUE + Long.bitCount(board.wQueens) * QUEEN_VALUE;
-        int blackScore = Long.bitCount(board.bPawns) * PAWN_VALUE + Long.bitCount(board.bKnights) * KNIGHT_VALUE + Long.bitCount(board.bBishops) * BISHOP_VALUE + Long.bitCount(board.bRooks) * ROOK_VALUE + Long.bitCount(board.bQueens) * QUEEN_VALUE;
+        int whiteScore = Long.bitCount(board.pawns & board.whites) * PAWN_VALUE + Long.bitCount(board.knights & board.whites) * KNIGHT_VALUE + Long.bitCount(board.bishops & board.whites) * BISHOP_VALUE + Long.bitCount(board.rooks & board.whites) * ROOK_VALUE + Long.bitCount(board.queens & board.whites) * QUEEN_VALUE;
+        int blackScore = Long.bitCount(board.pawns & board.blacks) * PAWN_VALUE + Long.bitCount(board.knights & board.blacks) * KNIGHT_VALUE + Long.bitCount(board.bishops & board.blacks) * BISHOP_VALUE + Long.bitCount(board.rooks & board.blacks) * ROOK_VALUE + Long.bitCount(board.queens & board.blacks) * QUEEN_VALUE;
         return whiteScore - blackScore;
     }
 
     public static int scoreKing(Bitboard board) {
         int score = 0;
-        if (Long.bitCount(board.wKings) == 0) score -= KING_VALUE;
-        if (Long.bitCount(board.bKings) == 0) score += KING_VALUE;
+        if (Long.bitCount(board.kings & board.whites) == 0) score -= KING_VALUE;
+        if (Long.bitCount(board.kings & board.blacks) == 0) score += KING_VALUE;
         return score;
     }
 
     public static int scorePawnStructure(Bitboard board) {
-        return sidedPawnStructure(board.wPawns, board.bPawns) - sidedPawnStructure(board.bPawns, board.wPawns);
+        return pawnEntry(board).score;
+    }
+
+    /**
+     * Returns the pawn structure evaluation of a position from the pawn hash table, evaluating
+     *      and storing it on a miss. The entry belongs to the calling thread and is overwritten
+     *      by its next call.
+     * @param board the position
+     * @return type PawnTable.Entry the structure score, passed pawns and pawn attack spans
+     */
+    public static PawnTable.Entry pawnEntry(Bitboard board) {
+        PawnTable.Entry entry = PAWN_ENTRIES.get();
+        long key = board.pawnHash();
+        if (pawnTable.probe(key, entry))
+            return entry;
+
+        long white = board.pawns & board.whites;
+        long black = board.pawns & board.blacks;
+        entry.passed[Bitboard.WHITE] = passedPawns(white, black, Bitboard.WHITE);
+        entry.passed[Bitboard.BLACK] = passedPawns(black, white, Bitboard.BLACK);
+        entry.attackSpans[Bitboard.WHITE] = attackSpans(white, Bitboard.WHITE);
+        entry.attackSpans[Bitboard.BLACK] = attackSpans(black, Bitboard.BLACK);
+        entry.score = sidedPawnStructure(white, entry.passed[Bitboard.WHITE]) - sidedPawnStructure(black, entry.passed[Bitboard.BLACK]);
+        pawnTable.store(key, entry);
+        return entry;
     }
 
     public static int scoreEdgeControl(Bitboard board) {
         // count knights on A and H file
-        int white = (Long.bitCount(board.wKnights & (FILE_A | FILE_H))) * KNIGHT_EDGE_DEDUCT;
-        int black = Long.bitCount(board.bKnights & (FILE_A | FILE_H)) * KNIGHT_EDGE_DEDUCT;
+        int white = (Long.bitCount(board.knights & board.whites & (Tables.FILE_A | Tables.FILE_H))) * KNIGHT_EDGE_DEDUCT;
+        int black = Long.bitCount(board.knights & board.blacks & (Tables.FILE_A | Tables.FILE_H)) * KNIGHT_EDGE_DEDUCT;
         return white - black;
     }
 
-    private static int sidedPawnStructure(long pawns, long opp) {
+    private static int sidedPawnStructure(long pawns, long passed) {
         int score = 0;
-        long isolatedMask = 0L;
-        long passedPawns = pawns;
 
-        for (long fileMask : FILES) {
-            long pawnsInFile = pawns & fileMask;
+        for (int file = 0; file < 8; ++file) {
+            long pawnsInFile = pawns & Tables.FILES[file];
             if (Long.bitCount(pawnsInFile) > 1) {
                 score += DOUBLED_PAWN_PENALTY * (Long.bitCount(pawnsInFile) - 1);
             }
-            isolatedMask |= pawnsInFile;
-            passedPawns &= ~(opp & fileMask);
 
             // isolated pawns
-            if ((pawns & fileMask) != 0 && (isolatedMask & (fileMask << 1 | fileMask >> 1)) == 0) {
+            if (pawnsInFile != 0 && (pawns & Tables.ADJACENT_FILES[file]) == 0) {
                 score += ISOLATED_PAWN_PENALTY;
             }
         }
 
-        // passed pawns
-        score += PASSED_PAWN_BONUS * Long.bitCount(passedPawns);
-
+        score += Long.bitCount(passed) * PASSED_PAWN_BONUS;
         return score;
     }
 
+    private static long passedPawns(long pawns, long opp, int color) {
+        long passed = 0L;
+        for (long p = pawns; p != 0L; p &= p - 1) {
+            if ((Tables.PASSED_PAWN_SPANS[color][Long.numberOfTrailingZeros(p)] & opp) == 0) {
+                passed |= p & -p;
+            }
+        }
+        return passed;
+    }
+
+    // every square the pawns attack now or could attack by advancing
+    private static long attackSpans(long pawns, int color) {
+        long spans = Tables.pawnAttacks(color == Bitboard.WHITE, pawns);
+        if (color == Bitboard.WHITE) {
+            spans |= spans >>> 8;
+            spans |= spans >>> 16;
+            spans |= spans >>> 32;
+        } else {
+            spans |= spans << 8;
+            spans |= spans << 16;
+            spans |= spans << 32;
+        }
+        return spans;
+    }
+
     public static int scorePieceDevelopment(Bitboard board) {    
-        long movedWKnights = board.INIT_WKNIGHTS & ~board.wKnights;
-        long movedWBishops = board.INIT_WBISHOPS & ~board.wBishops;
+        long movedWKnights = Bitboard.INIT_WKNIGHTS & ~(board.knights & board.whites);
+        long movedWBishops = Bitboard.INIT_WBISHOPS & ~(board.bishops & board.whites);
     
-        long movedBKnights = board.INIT_BKNIGHTS & ~board.bKnights;
-        long movedBBishops = board.INIT_BBISHOPS & ~board.bBishops;
+        long movedBKnights = Bitboard.INIT_BKNIGHTS & ~(board.knights & board.blacks);
+        long movedBBishops = Bitboard.INIT_BBISHOPS & ~(board.bishops & board.blacks);
     
         int whiteDevelopmentScore = Long.bitCount(movedWKnights) * DEVELOPMENT_KNIGHT_VALUE + Long.bitCount(movedWBishops) * DEVELOPMENT_BISHOP_VALUE;
     
@@ -138,17 +286,24 @@ public class Score
         return whiteDevelopmentScore - blackDevelopmentScore;
     }
 
-    public static int scoreCenterControl(Bitboard board, Bitboard attacked) {
-        int wCControl = Long.bitCount(CENTER_SQUARES_MASK & (attacked.wPawns | attacked.wKnights | attacked.wBishops | attacked.wQueens));
-        int bCControl = Long.bitCount(CENTER_SQUARES_MASK & (attacked.bPawns | attacked.bKnights | attacked.bBishops | attacked.bQueens));
-        int wEControl = Long.bitCount(OUTER_CENTER_MASK & (attacked.wPawns | attacked.wKnights | attacked.wBishops | attacked.wQueens));
-        int bEControl = Long.bitCount(OUTER_CENTER_MASK & (attacked.bPawns | attacked.bKnights | attacked.bBishops | attacked.bQueens));
+    public static int scoreCenterControl(Bitboard board, AttackMap attacks) {
+        long white = controlled(attacks, Bitboard.WHITE) & ~board.whites;
+        long black = controlled(attacks, Bitboard.BLACK) & ~board.blacks;
+        int wCControl = Long.bitCount(CENTER_SQUARES_MASK & white);
+        int bCControl = Long.bitCount(CENTER_SQUARES_MASK & black);
+        int wEControl = Long.bitCount(OUTER_CENTER_MASK & white);
+        int bEControl = Long.bitCount(OUTER_CENTER_MASK & black);
         return ((wCControl - bCControl) * CENTER_CONTROL_VALUE) + ((wEControl - bEControl) * EXTENDED_CONTROL_VALUE);
     }
 
+    // the squares a side contests with its pawns and minor pieces and queens
+    private static long controlled(AttackMap attacks, int color) {
+        return attacks.attacks(color, Bitboard.PAWN) | attacks.attacks(color, Bitboard.KNIGHT) | attacks.attacks(color, Bitboard.BISHOP) | attacks.attacks(color, Bitboard.QUEEN);
+    }
+
     public static int scoreKingSafety(Bitboard board) {
-        int whiteSafety = scoreKingSide(board.wPawns, WHITE_PAWN_SHIELD_MASK, WHITE_KING_SURROUND_MASK, board, true);
-        int blackSafety = scoreKingSide(board.bPawns, BLACK_PAWN_SHIELD_MASK, BLACK_KING_SURROUND_MASK, board, false);
+        int whiteSafety = scoreKingSide(board.pawns & board.whites, WHITE_PAWN_SHIELD_MASK, WHITE_KING_SURROUND_MASK, board, true);
+        int blackSafety = scoreKingSide(board.pawns & board.blacks, BLACK_PAWN_SHIELD_MASK, BLACK_KING_SURROUND_MASK, board, false);
         return whiteSafety - blackSafety;
     }
 
@@ -162,65 +317,128 @@ public class Score
     public static int scoreRookOpenFiles(Bitboard board) {
         int whiteScore = 0;
         int blackScore = 0;
-        long allPawns = board.wPawns | board.bPawns;
-        for (long file : FILES) {
+        long allPawns = board.pawns;
+        for (long file : Tables.FILES) {
             if ((allPawns & file) == 0) { // file open
-                whiteScore += Long.bitCount(board.wRooks & file) * ROOK_OPEN_FILE;
-                blackScore += Long.bitCount(board.bRooks & file) * ROOK_OPEN_FILE;
+                whiteScore += Long.bitCount(board.rooks & board.whites & file) * ROOK_OPEN_FILE;
+                blackScore += Long.bitCount(board.rooks & board.blacks & file) * ROOK_OPEN_FILE;
             }
         }
         return whiteScore - blackScore;
     }
 
-    public static int mvvlva(Move move, Bitboard board) {
-        Piece aggressor = move.getPiece();
-        Piece victim = board.get(move.getDestination());
-        int aVal = pieceValue(aggressor);
-        int vVal = pieceValue(victim);
-        return vVal - aVal;
+    public static int mvvlva(int move) {
+        return PIECE_VALUES[Moves.captured(move)] + PIECE_VALUES[Moves.promotion(move)] - PIECE_VALUES[Moves.piece(move)];
+    }
+
+    /**
+     * Static exchange evaluation: returns whether the sequence of captures on the destination
+     *      square of a move, with both sides always recapturing with their least valuable
+     *      attacker and free to stop, wins at least a threshold. Sliders uncovered behind a
+     *      capturing piece join the exchange as x-ray attackers. Pins are not considered.
+     * @param board the position the move is played in
+     * @param move the packed move
+     * @param threshold the material the exchange has to win
+     * @return type boolean true if the exchange wins at least the threshold
+     */
+    public static boolean see(Bitboard board, int move, int threshold) {
+        if (Moves.captured(move) == Bitboard.KING)
+            return true; // nothing outweighs taking the king
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int swap = PIECE_VALUES[Moves.captured(move)] - threshold;
+        if (swap < 0)
+            return false;
+        if (isUndefended(board, from, to, Moves.flags(move)))
+            return true; // nothing can take back
+        swap = PIECE_VALUES[Moves.piece(move)] - swap;
+        if (swap <= 0)
+            return true;
+
+        long occupied = (board.whites | board.blacks) & ~(1L << from) & ~(1L << to);
+        if ((Moves.flags(move) & Moves.EN_PASSANT) != 0)
+            occupied ^= 1L << ((from & 56) | (to & 7)); // the pawn taken en passant
+        long diagonals = board.bishops | board.queens;
+        long orthogonals = board.rooks | board.queens;
+        long attackers = board.attackersTo(to, occupied);
+        boolean white = (board.whites & (1L << from)) != 0;
+        boolean result = true;
+
+        while (true) {
+            white = !white;
+            attackers &= occupied;
+            long own = attackers & (white ? board.whites : board.blacks);
+            if (own == 0L)
+                break;
+            result = !result;
+
+            // the least valuable attacker recaptures
+            int piece = Bitboard.PAWN;
+            long pieces = 0L;
+            for (; piece < Bitboard.KING; ++piece) {
+                pieces = own & board.pieces(piece);
+                if (pieces != 0L)
+                    break;
+            }
+            if (piece == Bitboard.KING) // the king may only recapture when nothing can take it back
+                return (attackers & (white ? board.blacks : board.whites)) != 0L ? !result : result;
+
+            swap = PIECE_VALUES[piece] - swap;
+            if (swap < (result ? 1 : 0))
+                break;
+            occupied ^= pieces & -pieces;
+            if (piece == Bitboard.PAWN || piece == Bitboard.BISHOP || piece == Bitboard.QUEEN)
+                attackers |= Magic.bishopAttacks(to, occupied) & diagonals;
+            if (piece == Bitboard.ROOK || piece == Bitboard.QUEEN)
+                attackers |= Magic.rookAttacks(to, occupied) & orthogonals;
+        }
+        return result;
+    }
+
+    // whether no piece of the opponent can recapture on the destination, read from the attack map
+    // when the evaluation has already filled it, unless the moving piece or a pawn taken en
+    // passant could be uncovering a slider
+    private static boolean isUndefended(Bitboard board, int from, int to, int flags) {
+        AttackMap attacks = board.cachedAttackMap();
+        if (attacks == null)
+            return false;
+        boolean white = (board.whites & (1L << from)) != 0;
+        int them = white ? Bitboard.BLACK : Bitboard.WHITE;
+        long sliders = board.pieces(them, Bitboard.BISHOP) | board.pieces(them, Bitboard.ROOK) | board.pieces(them, Bitboard.QUEEN);
+        return (flags & Moves.EN_PASSANT) == 0 && (Tables.LINE[from][to] & sliders) == 0L && (attacks.attacks(them) & (1L << to)) == 0L;
     }
 
-    private static int pieceValue(Piece piece) {
-        if (piece instanceof Pawn)
-            return PAWN_VALUE;
-        else if (piece instanceof Knight)
-            return KNIGHT_VALUE;
-        else if (piece instanceof Bishop)
-            return BISHOP_VALUE;
-        else if (piece instanceof Rook)
-            return ROOK_VALUE;
-        else if (piece instanceof Queen)
-            return QUEEN_VALUE;
-        return 0; // king or null
+    public static int scoreMobility(Bitboard board, AttackMap attacks) {
+        return sidedMobility(board, attacks, Bitboard.WHITE, ~board.whites) - sidedMobility(board, attacks, Bitboard.BLACK, ~board.blacks);
     }
 
-    public static int scoreMobility(Bitboard board) {
-        int wMobility = (Long.bitCount(board.wBishopMoves()) * BISHOP_MOBILITY_VALUE) + (Long.bitCount(board.wKnightMoves()) * KNIGHT_MOBILITY_VALUE);
-        int bMobility = (Long.bitCount(board.bBishopMoves()) * BISHOP_MOBILITY_VALUE) + (Long.bitCount(board.bKnightMoves()) * KNIGHT_MOBILITY_VALUE);
+    // squares the pieces of a side can move to, not counting the ones taken by its own pieces
+    private static int sidedMobility(Bitboard board, AttackMap attacks, int color, long targets) {
+        int mobility = (Long.bitCount(attacks.attacks(color, Bitboard.BISHOP) & targets) * BISHOP_MOBILITY_VALUE)
+            + (Long.bitCount(attacks.attacks(color, Bitboard.KNIGHT) & targets) * KNIGHT_MOBILITY_VALUE);
         if (board.midgame()) {
-            wMobility += (Long.bitCount(board.wRookMoves()) * ROOK_MOBILITY_VALUE) + (Long.bitCount(board.wQueenMoves()) * QUEEN_MOBILITY_VALUE);
-            bMobility += (Long.bitCount(board.bRookMoves()) * ROOK_MOBILITY_VALUE) + (Long.bitCount(board.bQueenMoves()) * QUEEN_MOBILITY_VALUE);
+            mobility += (Long.bitCount(attacks.attacks(color, Bitboard.ROOK) & targets) * ROOK_MOBILITY_VALUE)
+                + (Long.bitCount(attacks.attacks(color, Bitboard.QUEEN) & targets) * QUEEN_MOBILITY_VALUE);
         }
-        return wMobility - bMobility;
+        return mobility;
     }
 
     public static int scoreBishopPairs(Bitboard board) {
         int score = 0;
-        if (Long.bitCount(board.wBishops) >= 2) score += BISHOP_PAIR_VALUE;
-        if (Long.bitCount(board.bBishops) >= 2) score -= BISHOP_PAIR_VALUE;
+        if (Long.bitCount(board.bishops & board.whites) >= 2) score += BISHOP_PAIR_VALUE;
+        if (Long.bitCount(board.bishops & board.blacks) >= 2) score -= BISHOP_PAIR_VALUE;
         return score;
     }
 
-    public static int scoreOutpostKnights(Bitboard board) {
+    public static int scoreOutpostKnights(Bitboard board, PawnTable.Entry pawns) {
         if (board.endgame()) return 0;
         int score = 0;
-        long wAttacks = board.bPawnMoves();
-        long bAttacks = board.wPawnMoves();
-        long wOutposts = (RANK_5 | RANK_6 | RANK_7) & ~wAttacks;
-        long bOutposts = (RANK_2 | RANK_3 | RANK_4) & ~bAttacks;
+        // an outpost can never be chased away by an enemy pawn
+        long wOutposts = (RANK_5 | RANK_6 | RANK_7) & ~pawns.attackSpans[Bitboard.BLACK];
+        long bOutposts = (RANK_2 | RANK_3 | RANK_4) & ~pawns.attackSpans[Bitboard.WHITE];
     
-        score += Long.bitCount(board.wKnights & wOutposts) * KNIGHT_OUTPOST_VALUE;
-        score -= Long.bitCount(board.bKnights & bOutposts) * KNIGHT_OUTPOST_VALUE;
+        score += Long.bitCount(board.knights & board.whites & wOutposts) * KNIGHT_OUTPOST_VALUE;
+        score -= Long.bitCount(board.knights & board.blacks & bOutposts) * KNIGHT_OUTPOST_VALUE;
         return score;
     }
 }
\ No newline at end of file
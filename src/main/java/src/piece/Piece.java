@@ -1,7 +1,6 @@
 package src.piece;
 import java.awt.*;
 import java.util.*;
-import src.Game;
 import src.Location;
 import src.Move;
 import src.board.Board;
@@ -279,8 +278,7 @@ public abstract class Piece implements Cloneable
     {
         Board board = getBoard();
         board.executeMove(move);
-        King king = color.equals(Color.WHITE) ? Game.wKing : Game.bKing;
-        Location kingLocation = king.getLocation();
+        Location kingLocation = board.findKing(color);
         Vector<Move> oppMoves = board.allIllegalMoves(color.equals(Color.WHITE) ? Color.BLACK : Color.WHITE);
         for(Move m : oppMoves)
         {
@@ -0,0 +1,66 @@
+package src.player;
+
+import src.board.Bitboard;
+import src.eval.Score;
+
+/**
+ * Fixed benchmark for comparing search modes. Every position is searched single threaded to the
+ *      same depth with a fresh transposition table, and the node counts and times are totalled per
+ *      mode, so changes to the search can be measured by the nodes they save. The pawn hash and
+ *      evaluation caches are cleared before each mode.
+ */
+public class Benchmark {
+    private static final int DEFAULT_DEPTH = 6;
+    private static final int HASH_SIZE = 16; // MB
+
+    public static final String[] POSITIONS = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+        "2r3k1/pp3ppp/2n1b3/3p4/3P4/2PB1N2/P4PPP/R5K1 b - - 0 20",
+    };
+
+    /**
+     * Runs the benchmark in both search modes.
+     * @param args an optional search depth
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        long[] alphaBeta = run(SearchThread.ALPHA_BETA, depth);
+        long[] pvs = run(SearchThread.PVS, depth);
+        double pawnHitRate = Score.pawnTable.hitRate();
+        double evalHitRate = Score.evalCache.hitRate();
+        long evalsSaved = Score.evalCache.getHits();
+
+        System.out.println("---------------------------------");
+        System.out.println("Alpha-beta: " + alphaBeta[0] + " nodes in " + alphaBeta[1] + "ms");
+        System.out.println("PVS: " + pvs[0] + " nodes in " + pvs[1] + "ms");
+        System.out.println("Node reduction: " + String.format("%.1f%%", 100.0 * (alphaBeta[0] - pvs[0]) / alphaBeta[0]));
+        System.out.println("Pawn hash hits (PVS): " + String.format("%.1f%%", 100.0 * pawnHitRate));
+        System.out.println("Eval cache hits (PVS): " + String.format("%.1f%%", 100.0 * evalHitRate) + ", " + evalsSaved + " evaluations saved");
+        System.out.println("---------------------------------");
+    }
+
+    /**
+     * Searches every benchmark position in one search mode.
+     * @param searchMode SearchThread.ALPHA_BETA or SearchThread.PVS
+     * @param depth the depth to search every position to
+     * @return type long[] index 0 containing the total nodes and index 1 the total time in ms
+     */
+    public static long[] run(int searchMode, int depth) {
+        long nodes = 0L;
+        long time = System.currentTimeMillis();
+        Score.pawnTable.clear();
+        Score.evalCache.clear();
+        for (String fen : POSITIONS) {
+            SearchThread search = new SearchThread(new Bitboard().fromFEN(fen), new TranspositionTable(HASH_SIZE), new MoveHistory(), 0, depth, searchMode);
+            search.call();
+            nodes += search.getNodes();
+        }
+        return new long[] {nodes, System.currentTimeMillis() - time};
+    }
+}
@@ -36,7 +36,7 @@ public class HumanPlayer extends Player
      */
     public Move nextMove()
     {
-        Vector<Move> moves = getBoard().allMoves(getColor());
+        Vector<Move> moves = legalMoves();
         Move move = null;
         while (!moves.contains(move))
         {
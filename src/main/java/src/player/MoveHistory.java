@@ -0,0 +1,99 @@
+package src.player;
+
+import java.util.Arrays;
+import java.util.Random;
+import src.board.Moves;
+
+/**
+ * Quiet move ordering statistics of one search thread: two killer moves per ply, a counter move
+ *      for every previous move and a butterfly history indexed by side, source and destination.
+ *      History scores are updated with gravity so they stay within MAX_HISTORY, and are aged
+ *      between moves instead of being thrown away. A MoveHistory belongs to a single thread.
+ */
+public class MoveHistory {
+    public static final int MAX_HISTORY = 1 << 14;
+
+    private static final int MAX_BONUS = 1200;
+
+    private final int[] killers = new int[MoveStack.MAX_PLY * 2];
+    private final int[] counters = new int[64 * 64];
+    private final int[] butterfly = new int[2 * 64 * 64];
+
+    /**
+     * Ages the tables between two searches: history scores are halved and killers, which belong
+     *      to the plies of the previous position, are cleared.
+     */
+    public void age() {
+        for (int i = 0; i < this.butterfly.length; ++i)
+            this.butterfly[i] /= 2;
+        Arrays.fill(this.killers, Moves.NONE);
+    }
+
+    /**
+     * Adds small random noise to the history scores so that helper threads order moves differently.
+     * @param random the source of the noise
+     */
+    public void perturb(Random random) {
+        for (int i = 0; i < this.butterfly.length; ++i)
+            this.butterfly[i] += random.nextInt(16);
+    }
+
+    public int history(int move, int color) {
+        return this.butterfly[index(move, color)];
+    }
+
+    public boolean isKiller(int move, int ply) {
+        return move == this.killers[ply * 2] || move == this.killers[ply * 2 + 1];
+    }
+
+    public int killer(int ply, int slot) {
+        return this.killers[ply * 2 + slot];
+    }
+
+    /**
+     * Returns the move that last refuted a previous move.
+     * @param last the previous move, or Moves.NONE
+     * @return type int the counter move, or Moves.NONE
+     */
+    public int counter(int last) {
+        return last == Moves.NONE ? Moves.NONE : this.counters[Moves.from(last) * 64 + Moves.to(last)];
+    }
+
+    /**
+     * Records a quiet move that caused a beta cutoff: it becomes the first killer of its ply and
+     *      the counter to the previous move, gets a history bonus, and every quiet move searched
+     *      before it gets the same amount as a penalty.
+     * @param moves the move array the searched moves are taken from
+     * @param start the index of the first move searched at this node
+     * @param index the index of the move that caused the cutoff
+     * @param ply the distance from the root of the search
+     * @param last the move that led to this node, or Moves.NONE
+     * @param color the side that played the move
+     * @param depth the remaining depth of the node
+     */
+    public void update(int[] moves, int start, int index, int ply, int last, int color, int depth) {
+        int move = moves[index];
+        if (this.killers[ply * 2] != move) {
+            this.killers[ply * 2 + 1] = this.killers[ply * 2];
+            this.killers[ply * 2] = move;
+        }
+        if (last != Moves.NONE)
+            this.counters[Moves.from(last) * 64 + Moves.to(last)] = move;
+
+        int bonus = Math.min(depth * depth, MAX_BONUS);
+        gravity(index(move, color), bonus);
+        for (int i = start; i < index; ++i) {
+            if (!Moves.isCapture(moves[i]))
+                gravity(index(moves[i], color), -bonus);
+        }
+    }
+
+    // moves the score towards the bonus while keeping it within MAX_HISTORY
+    private void gravity(int index, int bonus) {
+        this.butterfly[index] += bonus - this.butterfly[index] * Math.abs(bonus) / MAX_HISTORY;
+    }
+
+    private static int index(int move, int color) {
+        return (color * 64 + Moves.from(move)) * 64 + Moves.to(move);
+    }
+}
@@ -0,0 +1,264 @@
+package src.player;
+
+import src.board.Bitboard;
+import src.board.Moves;
+import src.eval.Score;
+
+/**
+ * A preallocated stack of packed moves and their ordering scores for one search thread. Each ply
+ *      owns the slice of the arrays that starts where its parent's moves end, so generating,
+ *      scoring and picking moves during the search never touches the heap.
+ *
+ *      Moves are handed out by a staged picker: the transposition table move first, then captures
+ *      that do not lose material, the killers and counter move, the remaining quiet moves by
+ *      history and last the losing captures. Every stage is generated only when the previous one
+ *      runs out and the best remaining move is selected one at a time, so a node that is cut off
+ *      by an early move never generates or sorts the rest.
+ */
+public class MoveStack {
+    public static final int MAX_PLY = 128;
+
+    private static final int HASH = 0;
+    private static final int GENERATE_CAPTURES = 1;
+    private static final int GOOD_CAPTURES = 2;
+    private static final int KILLERS = 3;
+    private static final int GENERATE_QUIETS = 4;
+    private static final int QUIETS = 5;
+    private static final int BAD_CAPTURES = 6;
+    private static final int DONE = 7;
+
+    public final int[] moves = new int[MAX_PLY * Moves.MAX_MOVES];
+    public final int[] scores = new int[MAX_PLY * Moves.MAX_MOVES];
+    private final int[] starts = new int[MAX_PLY + 1];
+
+    // picker state of every ply
+    private final int[] stages = new int[MAX_PLY];
+    private final int[] cursors = new int[MAX_PLY];
+    private final int[] goodEnds = new int[MAX_PLY]; // losing captures are parked from here
+    private final int[] captureEnds = new int[MAX_PLY];
+    private final int[] killerStarts = new int[MAX_PLY];
+    private final int[] hashMoves = new int[MAX_PLY];
+    private final int[] lasts = new int[MAX_PLY];
+    private final int[] indexes = new int[MAX_PLY];
+    private final boolean[] capturesOnly = new boolean[MAX_PLY];
+
+    /**
+     * Starts picking the moves of a new node at a ply.
+     * @param ply the distance from the root of the search
+     * @param hashMove the best move stored for the position, or Moves.NONE
+     * @param last the move that led to the position, or Moves.NONE
+     * @param capturesOnly true to only pick queen promotions and the captures that do not lose
+     *      material, as the quiescence search does
+     */
+    public void init(int ply, int hashMove, int last, boolean capturesOnly) {
+        this.starts[ply + 1] = this.starts[ply];
+        this.stages[ply] = HASH;
+        this.hashMoves[ply] = hashMove;
+        this.lasts[ply] = last;
+        this.capturesOnly[ply] = capturesOnly;
+    }
+
+    /**
+     * Empties the moves of a ply, so that a null move searched before the ply's own moves are
+     *      picked stores its moves right after the parent's.
+     * @param ply the distance from the root of the search
+     */
+    public void clear(int ply) {
+        this.starts[ply + 1] = this.starts[ply];
+    }
+
+    /**
+     * Returns the next legal move of the node at a ply, generating the next stage when needed.
+     * @param board the position of the node
+     * @param ply the distance from the root of the search
+     * @param history the quiet move statistics of the searching thread
+     * @return type int the next packed move, or Moves.NONE once every move has been picked
+     */
+    public int next(Bitboard board, int ply, MoveHistory history) {
+        while (true) {
+            switch (this.stages[ply]) {
+                case HASH: {
+                    this.stages[ply] = GENERATE_CAPTURES;
+                    int hashMove = this.hashMoves[ply];
+                    if (hashMove != Moves.NONE && board.isLegal(hashMove) && (!this.capturesOnly[ply] || this.isGoodTactical(board, hashMove))) {
+                        int start = this.starts[ply];
+                        this.moves[start] = hashMove;
+                        this.starts[ply + 1] = start + 1;
+                        this.indexes[ply] = start;
+                        return hashMove;
+                    }
+                    this.hashMoves[ply] = Moves.NONE;
+                    break;
+                }
+                case GENERATE_CAPTURES: {
+                    int start = this.starts[ply + 1];
+                    int end = this.generate(board, start, Bitboard.CAPTURES, this.hashMoves[ply]);
+                    for (int i = start; i < end; ++i)
+                        this.scores[i] = Score.mvvlva(this.moves[i]);
+                    this.cursors[ply] = start;
+                    this.goodEnds[ply] = end;
+                    this.captureEnds[ply] = end;
+                    this.starts[ply + 1] = end;
+                    this.stages[ply] = GOOD_CAPTURES;
+                    break;
+                }
+                case GOOD_CAPTURES: {
+                    while (this.cursors[ply] < this.goodEnds[ply]) {
+                        int i = this.cursors[ply];
+                        this.select(i, this.goodEnds[ply]);
+                        int move = this.moves[i];
+                        if (Moves.isCapture(move) && !Score.see(board, move, 0)) {
+                            this.swap(i, --this.goodEnds[ply]); // losing captures are tried last
+                            continue;
+                        }
+                        this.cursors[ply] = i + 1;
+                        this.indexes[ply] = i;
+                        return move;
+                    }
+                    if (this.capturesOnly[ply]) {
+                        this.stages[ply] = DONE;
+                        break;
+                    }
+                    this.stages[ply] = KILLERS;
+                    this.cursors[ply] = this.starts[ply + 1];
+                    this.addKillers(board, ply, history);
+                    break;
+                }
+                case KILLERS: {
+                    int i = this.cursors[ply];
+                    if (i < this.starts[ply + 1]) {
+                        this.cursors[ply] = i + 1;
+                        this.indexes[ply] = i;
+                        return this.moves[i];
+                    }
+                    this.stages[ply] = GENERATE_QUIETS;
+                    break;
+                }
+                case GENERATE_QUIETS: {
+                    int start = this.starts[ply + 1];
+                    int end = this.generate(board, start, Bitboard.QUIETS, this.hashMoves[ply]);
+                    int color = board.moveWhite ? Bitboard.WHITE : Bitboard.BLACK;
+                    for (int i = start; i < end; ++i) {
+                        if (this.isKiller(ply, this.moves[i])) {
+                            this.moves[i--] = this.moves[--end];
+                            continue;
+                        }
+                        this.scores[i] = history.history(this.moves[i], color);
+                    }
+                    this.cursors[ply] = start;
+                    this.starts[ply + 1] = end;
+                    this.stages[ply] = QUIETS;
+                    break;
+                }
+                case QUIETS: {
+                    int i = this.cursors[ply];
+                    if (i < this.starts[ply + 1]) {
+                        this.select(i, this.starts[ply + 1]);
+                        this.cursors[ply] = i + 1;
+                        this.indexes[ply] = i;
+                        return this.moves[i];
+                    }
+                    this.stages[ply] = BAD_CAPTURES;
+                    this.cursors[ply] = this.goodEnds[ply];
+                    break;
+                }
+                case BAD_CAPTURES: {
+                    int i = this.cursors[ply];
+                    if (i < this.captureEnds[ply]) {
+                        this.select(i, this.captureEnds[ply]);
+                        this.cursors[ply] = i + 1;
+                        this.indexes[ply] = i;
+                        return this.moves[i];
+                    }
+                    this.stages[ply] = DONE;
+                    break;
+                }
+                default:
+                    return Moves.NONE;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first move belonging to a ply.
+     * @param ply the distance from the root of the search
+     * @return type int the start of the ply's slice
+     */
+    public int start(int ply) {
+        return this.starts[ply];
+    }
+
+    /**
+     * Returns where the move last returned by next for a ply is stored. The moves picked before it
+     *      at the ply are stored below it, apart from the losing captures which come last.
+     * @param ply the distance from the root of the search
+     * @return type int the index of the move in moves
+     */
+    public int index(int ply) {
+        return this.indexes[ply];
+    }
+
+    // generates one type of moves at an index, leaving out the hash move already picked
+    private int generate(Bitboard board, int start, int type, int hashMove) {
+        int end = board.generateLegalMoves(this.moves, start, type, ~0L);
+        if (hashMove == Moves.NONE)
+            return end;
+        for (int i = start; i < end; ++i) {
+            if (this.moves[i] == hashMove) {
+                this.moves[i] = this.moves[--end];
+                break;
+            }
+        }
+        return end;
+    }
+
+    // appends the legal quiet killers and counter move of a ply that are not the hash move
+    private void addKillers(Bitboard board, int ply, MoveHistory history) {
+        int start = this.starts[ply + 1];
+        this.killerStarts[ply] = start;
+        int end = start;
+        for (int slot = 0; slot < 3; ++slot) {
+            int move = slot < 2 ? history.killer(ply, slot) : history.counter(this.lasts[ply]);
+            if (move == Moves.NONE || move == this.hashMoves[ply] || Bitboard.isTactical(move) || this.contains(start, end, move) || !board.isLegal(move))
+                continue;
+            this.moves[end++] = move;
+        }
+        this.starts[ply + 1] = end;
+    }
+
+    // a queen promotion or a capture that does not lose material
+    private boolean isGoodTactical(Bitboard board, int move) {
+        return Bitboard.isTactical(move) && (!Moves.isCapture(move) || Score.see(board, move, 0));
+    }
+
+    private boolean isKiller(int ply, int move) {
+        return this.contains(this.killerStarts[ply], this.cursors[ply], move);
+    }
+
+    private boolean contains(int start, int end, int move) {
+        for (int i = start; i < end; ++i) {
+            if (this.moves[i] == move)
+                return true;
+        }
+        return false;
+    }
+
+    // moves the highest scored move of a range to its start
+    private void select(int start, int end) {
+        int best = start;
+        for (int i = start + 1; i < end; ++i) {
+            if (this.scores[i] > this.scores[best])
+                best = i;
+        }
+        this.swap(start, best);
+    }
+
+    private void swap(int i, int j) {
+        int move = this.moves[i];
+        int score = this.scores[i];
+        this.moves[i] = this.moves[j];
+        this.scores[i] = this.scores[j];
+        this.moves[j] = move;
+        this.scores[j] = score;
+    }
+}
@@ -1,7 +1,10 @@
 package src.player;
 import java.awt.Color;
+import java.util.Vector;
 import src.Move;
+import src.board.Bitboard;
 import src.board.Board;
+import src.board.Moves;
 
 /**
  * A player abstract class that describes how a player class should look like, provides
@@ -57,6 +60,29 @@ public abstract class Player
         return color;
     }
 
+    /**
+     * Returns every legal move of the player on the current board, generated on the game's
+     *      bitboard position with the legal move generator so that no move leaves the player's own
+     *      king in check. The game board promotes to a queen only, so each promotion square is
+     *      listed once.
+     * @return type Vector<Move> the legal moves of the player
+     */
+    protected Vector<Move> legalMoves()
+    {
+        Bitboard bitboard = board.getPosition().copy();
+        bitboard.moveWhite = color.equals(Color.WHITE);
+        int[] moves = new int[Moves.MAX_MOVES];
+        int count = bitboard.generateLegalMoves(moves, 0, false);
+        Vector<Move> legal = new Vector<Move>(count);
+        for (int i = 0; i < count; ++i)
+        {
+            int promotion = Moves.promotion(moves[i]);
+            if (promotion == Moves.NONE || promotion == Bitboard.QUEEN)
+                legal.add(Moves.toMove(moves[i], board));
+        }
+        return legal;
+    }
+
     /**
      * An abstract method to get the nextMove for a player
      * @return type Move the move that a player wants to make
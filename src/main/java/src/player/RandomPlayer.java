@@ -31,7 +31,7 @@ public class RandomPlayer extends Player
      */
     public Move nextMove()
     {
-        Vector<Move> moves = getBoard().allMoves(getColor());
+        Vector<Move> moves = legalMoves();
         return moves.get((int) (Math.random() * moves.size()));
     }
 }
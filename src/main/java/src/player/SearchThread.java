@@ -0,0 +1,369 @@
+package src.player;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import src.board.Bitboard;
+import src.board.Moves;
+import src.eval.Score;
+
+/**
+ * One thread of a Lazy SMP search. Every thread searches its own copy of the root by iterative
+ *      deepening with its own move stack and history table, and only the transposition table is
+ *      shared. Helper threads start at a different depth, skip depths and jitter their quiet move
+ *      ordering so that they fill the shared table with lines the main thread has not reached yet.
+ *      The search is a negamax: every score is from the point of view of the side to move.
+ */
+public class SearchThread implements Callable<Void> {
+    // search modes, plain alpha-beta is kept to measure principal variation search against
+    public static final int ALPHA_BETA = 0;
+    public static final int PVS = 1;
+
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    private static final int MATE_BOUND = MATE - MoveStack.MAX_PLY;
+
+    private static final int WINDOW = 100;
+
+    // frontier pruning margins indexed by remaining depth, left public so they can be tuned
+    public static int[] futilityMargins = {0, 150, 300, 450};
+    public static int[] razoringMargins = {0, 300, 550};
+    public static int reverseFutilityMargin = 120; // per ply of remaining depth
+    public static final int FRONTIER_DEPTH = 3;
+
+    // late move reductions by remaining depth and number of moves searched before
+    private static final int[][] REDUCTIONS = new int[64][64];
+    private static final int CHECK_INTERVAL = 1024; // nodes between interrupt checks
+
+    static {
+        for (int depth = 1; depth < 64; ++depth)
+            for (int moves = 1; moves < 64; ++moves)
+                REDUCTIONS[depth][moves] = (int) (0.75 + Math.log(depth) * Math.log(moves) / 2.25);
+    }
+
+    private final Bitboard board;
+    private final TranspositionTable transpositionTable;
+    private final int id;
+    private final int maxDepth;
+    private final int searchMode;
+    private final MoveStack moveStack = new MoveStack();
+    private final MoveHistory history;
+
+    // triangular principal variation table, row ply holds the line found from ply onwards
+    private final int[][] pvTable = new int[MoveStack.MAX_PLY][MoveStack.MAX_PLY];
+    private final int[] pvLength = new int[MoveStack.MAX_PLY];
+
+    private long nodes;
+    private long nextCheck = CHECK_INTERVAL;
+    private boolean stopped;
+    private volatile boolean stopRequested; // set by the thread that started the search
+
+    // deepest fully searched iteration, read by the main thread once the search ends
+    private volatile int completedDepth;
+    private volatile int bestScore;
+    private volatile int[] principalVariation = new int[0];
+
+    /**
+     * Creates a search thread.
+     * @param root the position to search, copied so the thread can make and unmake moves in place
+     * @param transpositionTable the table shared by every thread of the search
+     * @param history the move ordering statistics this thread keeps between searches
+     * @param id 0 for the main thread, 1 and up for helper threads
+     * @param maxDepth the deepest iteration to search
+     * @param searchMode ALPHA_BETA or PVS
+     */
+    public SearchThread(Bitboard root, TranspositionTable transpositionTable, MoveHistory history, int id, int maxDepth, int searchMode) {
+        this.board = root.copy();
+        this.transpositionTable = transpositionTable;
+        this.history = history;
+        this.id = id;
+        this.maxDepth = maxDepth;
+        this.searchMode = searchMode;
+        this.history.age();
+        if (id > 0)
+            this.history.perturb(new Random(id));
+    }
+
+    /**
+     * Runs iterative deepening until the maximum depth, until the thread is interrupted or until
+     *      stop is called.
+     * @return type Void nothing, the result is read through the getters
+     */
+    @Override
+    public Void call() {
+        int score = 0;
+        for (int depth = 2 + this.id % 2; depth <= this.maxDepth && !this.stopRequested; depth += (this.id > 0 && depth % 3 == 0) ? 2 : 1) {
+            long time = System.currentTimeMillis();
+            int alpha = this.completedDepth > 0 ? Math.max(score - WINDOW, -INFINITY) : -INFINITY;
+            int beta = this.completedDepth > 0 ? Math.min(score + WINDOW, INFINITY) : INFINITY;
+            int result = negamax(this.board, depth, 0, alpha, beta, Moves.NONE);
+
+            // aspiration window
+            if (!this.stopped && (result <= alpha || result >= beta)) {
+                if (this.id == 0)
+                    System.out.println("Re-searching...");
+                result = negamax(this.board, depth, 0, -INFINITY, INFINITY, Moves.NONE);
+            }
+
+            if (this.stopped)
+                break;
+            if (this.id == 0)
+                System.out.println("Ran depth " + depth + " in " + (System.currentTimeMillis() - time) + "ms");
+
+            if (this.pvLength[0] > 0) {
+                score = result;
+                this.bestScore = score;
+                this.principalVariation = Arrays.copyOf(this.pvTable[0], this.pvLength[0]);
+                this.completedDepth = depth;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Asks the search to stop, it notices within CHECK_INTERVAL nodes and returns from call.
+     */
+    public void stop() {
+        this.stopRequested = true;
+    }
+
+    public int getCompletedDepth() {
+        return this.completedDepth;
+    }
+
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    public int getBestScore() {
+        return this.bestScore;
+    }
+
+    /**
+     * Returns the principal variation of the deepest completed iteration.
+     * @return type int[] the packed moves of the line, best move first
+     */
+    public int[] getPrincipalVariation() {
+        return this.principalVariation;
+    }
+
+    private int negamax(Bitboard board, int depth, int ply, int alpha, int beta, int last) {
+        this.pvLength[ply] = ply;
+        if (depth <= 0 || ply >= MoveStack.MAX_PLY - 1)
+            return quiescence(board, ply, alpha, beta);
+
+        ++this.nodes;
+        if (isStopped())
+            return 0;
+
+        long key = board.hash();
+        long entry = transpositionTable.probe(key);
+        if (ply > 0 && entry != 0L && TranspositionTable.depth(entry) >= depth && isUsable(entry, ply, alpha, beta))
+            return fromTable(TranspositionTable.score(entry), ply);
+
+        boolean white = board.moveWhite;
+        int color = white ? Bitboard.WHITE : Bitboard.BLACK;
+        boolean inCheck = board.inCheck(white);
+
+        // frontier pruning, only at null window nodes so the principal variation is never pruned
+        boolean futile = false;
+        if (depth <= FRONTIER_DEPTH && beta - alpha == 1 && !inCheck && Math.abs(beta) < MATE_BOUND) {
+            int staticEval = evaluate(board);
+
+            // reverse futility: far enough above beta that no move will bring the score back down
+            int margin = reverseFutilityMargin * depth;
+            if (staticEval - margin >= beta)
+                return staticEval - margin;
+
+            // razoring: far below alpha, so only captures could still raise the score
+            if (depth < razoringMargins.length && staticEval + razoringMargins[depth] <= alpha) {
+                int score = quiescence(board, ply, alpha, beta);
+                if (score <= alpha)
+                    return score;
+            }
+
+            // futility: quiet moves cannot lift the score above alpha
+            futile = staticEval + futilityMargins[depth] <= alpha;
+        }
+
+        // verified null move heuristic
+        if (depth >= 4 && !inCheck && !board.endgame() && !board.tactical(white ? Color.WHITE : Color.BLACK)) {
+            moveStack.clear(ply);
+            board.makeNullMove();
+
+            // null move reduction
+            int nullScore = -negamax(board, depth - 3 - 1, ply + 1, -beta, -alpha, Moves.NONE);
+            board.unmakeNullMove();
+            if (this.stopped)
+                return 0;
+
+            // null move verification
+            if (nullScore >= beta) {
+                int verification = negamax(board, depth - 4, ply, alpha, beta, Moves.NONE);
+                if (this.stopped)
+                    return 0;
+                if (verification >= beta)
+                    return nullScore;
+            }
+        }
+
+        int alphaOrig = alpha;
+        moveStack.init(ply, TranspositionTable.move(entry), last, false);
+        int bestMove = Moves.NONE;
+        int bestScore = -INFINITY;
+        int moveCount = 0;
+        for (int move = moveStack.next(board, ply, history); move != Moves.NONE; move = moveStack.next(board, ply, history)) {
+            // the game board can only promote to a queen, so the root never picks an underpromotion
+            if (ply == 0 && Moves.promotion(move) != Moves.NONE && Moves.promotion(move) != Bitboard.QUEEN)
+                continue;
+            ++moveCount;
+            board.makeMove(move);
+            boolean givesCheck = board.inCheck(!white);
+            if (futile && bestMove != Moves.NONE && !Moves.isCapture(move) && Moves.promotion(move) == Moves.NONE && !givesCheck) {
+                board.unmakeMove(move);
+                continue;
+            }
+            int extension = givesCheck ? 1 : 0; // check extension
+            int newDepth = depth - 1 + extension;
+            int score;
+            if (bestMove == Moves.NONE) {
+                score = -negamax(board, newDepth, ply + 1, -beta, -alpha, move);
+            } else {
+                // late quiet moves are searched shallower first, captures, checks and killers never
+                int searched = moveCount - 1;
+                int reduction = 0;
+                if (depth >= 3 && searched >= 3 && !inCheck && !givesCheck && !Moves.isCapture(move) && Moves.promotion(move) == Moves.NONE
+                        && !history.isKiller(move, ply))
+                    reduction = Math.min(REDUCTIONS[Math.min(depth, 63)][Math.min(searched, 63)], newDepth - 1);
+
+                score = alpha + 1;
+                if (reduction > 0)
+                    score = -negamax(board, newDepth - reduction, ply + 1, -alpha - 1, -alpha, move);
+                // null window search, re-searched with the full window only when it fails high
+                if (score > alpha && this.searchMode == PVS)
+                    score = -negamax(board, newDepth, ply + 1, -alpha - 1, -alpha, move);
+                if (score > alpha && (this.searchMode != PVS || score < beta))
+                    score = -negamax(board, newDepth, ply + 1, -beta, -alpha, move);
+            }
+            board.unmakeMove(move);
+            if (this.stopped)
+                return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePrincipalVariation(ply, move);
+            }
+            if (alpha >= beta) {
+                if (!Moves.isCapture(move))
+                    history.update(moveStack.moves, moveStack.start(ply), moveStack.index(ply), ply, last, color, depth);
+                break;
+            }
+        }
+        if (moveCount == 0)
+            return inCheck ? -MATE + ply : 0; // checkmate or stalemate
+        if (bestMove == Moves.NONE)
+            return bestScore; // every legal move was pruned
+        store(key, bestMove, bestScore, depth, ply, alphaOrig, beta);
+        return bestScore;
+    }
+
+    private int quiescence(Bitboard board, int ply, int alpha, int beta) {
+        this.pvLength[ply] = ply;
+        ++this.nodes;
+        long key = board.hash();
+        long entry = transpositionTable.probe(key);
+        if (entry != 0L && isUsable(entry, ply, alpha, beta))
+            return fromTable(TranspositionTable.score(entry), ply);
+
+        int alphaOrig = alpha;
+        // in check there is no standing pat: every evasion is searched, and none means mate
+        boolean inCheck = board.inCheck(board.moveWhite);
+        int standPat = inCheck ? -MATE + ply : Score.evaluate(board, alpha, beta);
+        if (standPat >= beta) {
+            store(key, Moves.NONE, beta, 0, ply, alphaOrig, beta);
+            return beta;
+        }
+        if (standPat > alpha)
+            alpha = standPat;
+
+        if (ply >= MoveStack.MAX_PLY - 1)
+            return inCheck ? evaluate(board) : standPat;
+        moveStack.init(ply, Moves.NONE, Moves.NONE, !inCheck);
+        // losing captures are left out by the picker, they cannot raise alpha
+        for (int move = moveStack.next(board, ply, history); move != Moves.NONE; move = moveStack.next(board, ply, history)) {
+            board.makeMove(move);
+            int score = -quiescence(board, ply + 1, -beta, -alpha);
+            board.unmakeMove(move);
+
+            if (score >= beta) {
+                store(key, move, beta, 0, ply, alphaOrig, beta);
+                return beta;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePrincipalVariation(ply, move);
+            }
+        }
+        store(key, Moves.NONE, alpha, 0, ply, alphaOrig, beta);
+        return alpha;
+    }
+
+    /**
+     * Returns the static evaluation from the point of view of the side to move.
+     */
+    private static int evaluate(Bitboard board) {
+        return board.moveWhite ? Score.bitboardScore(board) : -Score.bitboardScore(board);
+    }
+
+    /**
+     * Returns whether the search has to stop, checking for an interrupt or a stop request every
+     *      thousand nodes.
+     */
+    private boolean isStopped() {
+        if (this.nodes >= this.nextCheck) {
+            this.nextCheck = this.nodes + CHECK_INTERVAL;
+            if (Thread.currentThread().isInterrupted() || this.stopRequested)
+                this.stopped = true;
+        }
+        return this.stopped;
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        int[] line = this.pvTable[ply];
+        line[ply] = move;
+        int length = this.pvLength[ply + 1];
+        System.arraycopy(this.pvTable[ply + 1], ply + 1, line, ply + 1, length - ply - 1);
+        this.pvLength[ply] = Math.max(length, ply + 1);
+    }
+
+    /**
+     * Returns whether a stored score settles a node searched with the given window.
+     */
+    private static boolean isUsable(long entry, int ply, int alpha, int beta) {
+        int score = fromTable(TranspositionTable.score(entry), ply);
+        switch (TranspositionTable.bound(entry)) {
+            case TranspositionTable.EXACT: return true;
+            case TranspositionTable.LOWER: return score >= beta;
+            default: return score <= alpha;
+        }
+    }
+
+    /**
+     * Stores a node's result in the transposition table, deriving its bound from the window the
+     *      node was searched with. Mate scores are stored relative to the node rather than the root.
+     */
+    private void store(long key, int move, int score, int depth, int ply, int alpha, int beta) {
+        int bound = score <= alpha ? TranspositionTable.UPPER : score >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        int stored = score >= MATE_BOUND ? score + ply : score <= -MATE_BOUND ? score - ply : score;
+        transpositionTable.store(key, move, stored, depth, bound);
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= MATE_BOUND ? score - ply : score <= -MATE_BOUND ? score + ply : score;
+    }
+}
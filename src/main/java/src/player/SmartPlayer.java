@@ -1,7 +1,7 @@
 package src.player;
 import java.awt.Color;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,14 +31,18 @@ public class SmartPlayer extends Player
 {
     private static final int DEPTH = 10;
     private static final int TIMEOUT = 10000; // ms
-    private static final int WINDOW = 100;
+    private static final int HASH_SIZE = 32; // MB
 
     private static final Logger logger = LogManager.getLogger(src.player.SmartPlayer.class);
-    private int[][] historyTable = new int[6][64];
+    private TranspositionTable transpositionTable = new TranspositionTable(HASH_SIZE);
     private ExecutorService executorService;
+    private int threads;
+    private MoveHistory[] histories; // per search thread, kept between moves
+    private int searchMode = SearchThread.PVS;
     public Board board;
     private Map<Integer, Move> moves;
     public int MAX_DEPTH = 0;
+    public int bestScore = 0;
     private OpeningEngine openingEngine;
     private boolean opening = true;
     public String open;
@@ -58,6 +62,10 @@ public class SmartPlayer extends Player
         openingEngine = new OpeningEngine(this);
         int availableCores = Runtime.getRuntime().availableProcessors();
         this.executorService = Executors.newFixedThreadPool(availableCores);
+        this.threads = availableCores;
+        this.histories = new MoveHistory[availableCores];
+        for (int i = 0; i < availableCores; ++i)
+            this.histories[i] = new MoveHistory();
     }
 
     /**
@@ -69,7 +77,7 @@ public class SmartPlayer extends Player
         if (opening && openingEngine.search(board)) {
             String move = this.open;
             Location destination = new Location(8 - Character.getNumericValue(move.charAt(move.length() - 1)), move.charAt(move.length() - 2) - 'a');
-            Location source = findSource((Character.isLowerCase(move.charAt(0))) ? 'P' : move.charAt(0), destination, board);
+            Location source = findSource((Character.isLowerCase(move.charAt(0))) ? 'P' : move.charAt(0), destination);
             if (source != null) {
                 System.out.println("---------------------------------");
                 System.out.println("Theory: " + this.line);
@@ -79,15 +87,17 @@ public class SmartPlayer extends Player
             }
         } else
             opening = false;
-        Bitboard bitboard = new Bitboard().fromBoard(getBoard()); bitboard.moveNumber = board.fullMove; bitboard.moveWhite = getColor().equals(Color.WHITE);
-        Object[] best = (findBestMove(bitboard, DEPTH, TIMEOUT));
+        Bitboard bitboard = getBoard().getPosition().copy(); bitboard.moveWhite = getColor().equals(Color.WHITE);
+        Move[] best = findBestMove(bitboard, DEPTH, TIMEOUT);
         double[][][] bitboards = getBoard().boardToBitboards();
         System.out.println("---------------------------------");
-        System.out.println("Move Score: " + best[0] + ", Depth: " + MAX_DEPTH);
-        System.out.println("Move: " + (Move) best[1] + ", Network Score: " + src.eval.Score.networkScore(bitboards));
+        System.out.println("Move Score: " + bestScore + ", Depth: " + MAX_DEPTH);
+        System.out.println("Move: " + (best.length > 0 ? best[0] : null) + ", Network Score: " + src.eval.Score.networkScore(bitboards));
+        System.out.println("Line: " + Arrays.toString(best));
+        System.out.println("Eval cache hits: " + String.format("%.1f%%", 100.0 * Score.evalCache.hitRate()) + ", Evaluations saved: " + Score.evalCache.getHits());
         System.out.println("Midgame: " + bitboard.midgame() + ", Endgame: " + bitboard.endgame() + ", Tactical: " + bitboard.tactical(getColor()));
         System.out.println("---------------------------------");
-        return (Move) best[1];
+        return best.length > 0 ? best[0] : null;
     }
 
     /**
@@ -95,180 +105,100 @@ public class SmartPlayer extends Player
      * @param maxDepth the maxDepth to search the minimax tree
      * @param timeout the timeout in milliseconds to stop the search
      * @param board the current state of the game as a Bitboard object
-     * @return Object[] index 0 containing the max score and index 1 containing the best move
+     * @return Move[] the principal variation, best move first, its score is left in bestScore
      */
-    public Object[] findBestMove(Bitboard board, int maxDepth, long timeout) {
-        Move bestMove = null;
-        int bestScore = Integer.MIN_VALUE;
+    public Move[] findBestMove(Bitboard board, int maxDepth, long timeout) {
+        transpositionTable.newSearch();
+        Score.evalCache.resetStats();
+        SearchThread main = new SearchThread(board, transpositionTable, histories[0], 0, maxDepth, searchMode);
+        List<SearchThread> helpers = new ArrayList<SearchThread>();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int id = 1; id < threads; ++id) {
+            SearchThread helper = new SearchThread(board, transpositionTable, histories[id], id, maxDepth, searchMode);
+            helpers.add(helper);
+            futures.add(executorService.submit(helper));
+        }
+
         Thread currentThread = Thread.currentThread();
         Thread timerThread = new Thread(() -> {
             try {
                 Thread.sleep(timeout);
                 currentThread.interrupt();
             } catch (InterruptedException e) {
-                currentThread.interrupt();
+                // search finished before the timeout
             }
         });
         timerThread.start();
-    
-        for (int depth = 2; depth <= maxDepth; depth++) {
-            long time = System.currentTimeMillis();
-            int alpha = bestScore - WINDOW;
-            int beta = bestScore + WINDOW;
-            Object[] result = minimax(board, depth, alpha, beta, true, null);
-    
-            // aspiration window
-            if (result != null && ((int) result[0] <= alpha || (int) result[0] >= beta)) {
-                alpha = Integer.MIN_VALUE; // re-search
-                beta = Integer.MAX_VALUE;
-                System.out.println("Re-searching...");
-                result = minimax(board, depth, alpha, beta, true, null);
-            }
-    
-            if (Thread.currentThread().isInterrupted() || result == null)
-                break;
-            System.out.println("Ran depth " + depth + " in " + (System.currentTimeMillis() - time) + "ms");
-    
-            if (result != null) {
-                MAX_DEPTH = depth;
-                Move m = (Move) result[1];
-                bestMove = new Move(this.board.get(m.getSource()), m.getSource(), m.getDestination());
-                bestScore = (int) result[0];
-                moves.put(depth, bestMove);
-            }
-        }
-    
+        main.call();
         timerThread.interrupt();
-        return new Object[] {bestScore, bestMove};
-    }
+        for (SearchThread helper : helpers)
+            helper.stop();
+        awaitHelpers(futures);
+        awaitTimer(timerThread);
+        Thread.interrupted(); // clear a timeout that fired while the search was finishing
 
-    private Object[] minimax(Bitboard board, int depth, int alpha, int beta, boolean maximize, Move last) {
-        if (depth <= 0)
-            return quiescence(board, alpha, beta, maximize);
-    
-        if (Thread.currentThread().isInterrupted())
-            return null;
-        
-        Color color = maximize ? getColor() : (getColor().equals(Color.BLACK) ? Color.WHITE : Color.BLACK);
-
-        // verified null move heuristic
-        if (depth >= 4 && !board.endgame() && !board.tactical(color)) {
-            Bitboard nullMoveBoard = board.copy();
-            nullMoveBoard.moveWhite = !board.moveWhite;
-        
-            // null move reduction
-            Object[] nullMoveResult = minimax(nullMoveBoard, depth - 3 - 1, alpha, beta, !maximize, null);
-            if (nullMoveResult == null || Thread.currentThread().isInterrupted())
-                return null;
-            int nullScore = (int) nullMoveResult[0];
-            
-            // null move verification
-            if ((maximize && nullScore >= beta) || (!maximize && nullScore <= alpha)) {
-                Object[] verificationResult = minimax(board, depth - 4, alpha, beta, maximize, null);
-                if (verificationResult == null || Thread.currentThread().isInterrupted())
-                    return null;
-                int verification = (int) verificationResult[0];
-        
-                if ((maximize && verification >= beta) || (!maximize && verification <= alpha))
-                    return nullMoveResult;
-            }
+        // the deepest completed iteration wins, the main thread on ties
+        SearchThread best = main;
+        for (SearchThread helper : helpers) {
+            if (helper.getCompletedDepth() > best.getCompletedDepth())
+                best = helper;
         }
-    
-        List<Move> moves = board.generateAllMoves(color);
-        moves.sort(advancedComparator(board)); // mvvlva ordering
-        Move bestMove = null;
-        int bestScore = maximize ? Integer.MIN_VALUE : Integer.MAX_VALUE;
-        for (Move move : moves) {
-            if (board.get(move.getDestination()) instanceof King)
-                return null; // illegal move
-
-            Bitboard newBoard = board.processMove(move);
-            newBoard.moveNumber = board.moveNumber + 1;
-            newBoard.moveWhite = !board.moveWhite;
 
-            int extension = this.isCritical(move, newBoard) ? 1 : 0; // extend search in critical positions
-            Object[] response = minimax(newBoard, depth - 1 + extension, alpha, beta, !maximize, move);
-
-            if (response == null)
-                continue;
-            
-            int score = (int) response[0];
-
-            if ((maximize && score >= beta) || (!maximize && score <= alpha)) {
-                updateHistory(move, depth); // update history table for cutoff
-            }
-    
-            if (maximize && score > bestScore) {
-                bestScore = score;
-                bestMove = move;
-            } else if (!maximize && score < bestScore) {
-                bestScore = score;
-                bestMove = move;
-            }
-    
-            if (maximize)
-                alpha = Math.max(alpha, score);
-            else
-                beta = Math.min(beta, score);
-            if (beta <= alpha)
-                break;
+        int[] variation = best.getPrincipalVariation();
+        Move[] line = new Move[variation.length];
+        Bitboard position = board.copy();
+        for (int i = 0; i < variation.length; ++i) {
+            line[i] = i == 0 ? Moves.toMove(variation[i], this.board) : Moves.toMove(variation[i], position);
+            position.makeMove(variation[i]);
+        }
+        if (line.length > 0) {
+            MAX_DEPTH = best.getCompletedDepth();
+            bestScore = best.getBestScore();
+            moves.put(MAX_DEPTH, line[0]);
         }
-        bestMove = (bestMove != null) ? new Move(this.board.get(bestMove.getSource()), bestMove.getSource(), bestMove.getDestination()) : null;
-        if (Thread.currentThread().isInterrupted())
-            return null;
-        return new Object[] {bestScore, bestMove};
+        return line;
     }
 
-    private Object[] quiescence(Bitboard board, int alpha, int beta, boolean maximize) {
-        int standPat = Score.bitboardScore(board);
-        if (maximize) {
-            if (standPat >= beta) {
-                return new Object[]{beta, null};
-            }
-            if (standPat > alpha) {
-                alpha = standPat;
-            }
-        } else {
-            if (standPat <= alpha) {
-                return new Object[]{alpha, null};
-            }
-            if (standPat < beta) {
-                beta = standPat;
+    /**
+     * Waits until every helper has returned, so that none is still using its history table or a
+     *      pool thread when the next search starts. Helper failures are logged, the main thread's
+     *      result stands without them.
+     * @param futures the helpers of the search, already asked to stop
+     */
+    private void awaitHelpers(List<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // the timeout fired while the search was finishing, the helper is stopping anyway
+                } catch (ExecutionException e) {
+                    logger.error("Search helper failed", e.getCause());
+                    break;
+                }
             }
         }
-    
-        List<Move> captureMoves = board.captureMoves(maximize ? getColor() : (getColor().equals(Color.BLACK) ? Color.WHITE : Color.BLACK));
-        captureMoves.sort(advancedComparator(board)); // mvvlva ordering
-        for (Move move : captureMoves) {
-            Bitboard newBoard = board.processMove(move);
-            newBoard.moveNumber = board.moveNumber + 1;
-            newBoard.moveWhite = !board.moveWhite;
-    
-            Object[] response = quiescence(newBoard, alpha, beta, !maximize);
-            if (response == null) continue;
-    
-            int score = (int) response[0];
-            if (maximize) {
-                if (score >= beta) {
-                    return new Object[]{beta, null};
-                }
-                if (score > alpha) {
-                    alpha = score;
-                }
-            } else {
-                if (score <= alpha) {
-                    return new Object[]{alpha, null};
-                }
-                if (score < beta) {
-                    beta = score;
-                }
+    }
+
+    /**
+     * Waits until the timer has exited, so that a timeout it was already firing lands before the
+     *      interrupt flag is cleared instead of aborting the next search.
+     * @param timerThread the timer of the search, already interrupted
+     */
+    private void awaitTimer(Thread timerThread) {
+        while (true) {
+            try {
+                timerThread.join();
+                return;
+            } catch (InterruptedException e) {
+                // the timeout fired while the search was finishing, keep waiting
             }
         }
-        return new Object[]{maximize ? alpha : beta, null};
     }
 
-    private Location findSource(char pieceChar, Location destination, Board board) {
-        Vector<Move> moves = board.allMoves(getColor());
+    private Location findSource(char pieceChar, Location destination) {
+        Vector<Move> moves = legalMoves();
         Piece p;
         for (Move m : moves) {
             p = m.getPiece();
@@ -289,50 +219,48 @@ public class SmartPlayer extends Player
         throw new IllegalArgumentException("No piece found for " + pieceChar + " at " + destination);
     }
 
-    private Comparator<Move> mvvLvaComparator(Bitboard board) {
-        return (Move m1, Move m2) -> {
-            boolean m1Capture = isCapture(m1, board);
-            boolean m2Capture = isCapture(m2, board);
-            if (m1Capture && m2Capture) {
-                return Integer.compare(Score.mvvlva(m2, board), Score.mvvlva(m1, board));
-            }
-            return m1Capture ? -1 : (m2Capture ? 1 : 0);
-        };
+    /**
+     * Sets how many threads search in parallel, the calling thread included.
+     * @param threads the number of search threads, at most the number of available cores
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        this.threads = Math.min(threads, Runtime.getRuntime().availableProcessors());
     }
 
-    private Comparator<Move> advancedComparator(Bitboard board) {
-        return (Move m1, Move m2) -> {
-            boolean m1Capture = isCapture(m1, board);
-            boolean m2Capture = isCapture(m2, board);
-    
-            if (m1Capture && m2Capture) {
-                // both captures, use MVV-LVA
-                return Integer.compare(Score.mvvlva(m2, board), Score.mvvlva(m1, board));
-            } else if (!m1Capture && !m2Capture) {
-                // neither a capture, use history scores
-                int score1 = this.historyTable[indexPiece(m1.getPiece())][index(m1.getDestination())];
-                int score2 = this.historyTable[indexPiece(m2.getPiece())][index(m2.getDestination())];
-                return Integer.compare(score2, score1);
-            } else {
-                // prioritize capture
-                return m1Capture ? -1 : 1;
-            }
-        };
+    /**
+     * Selects the search algorithm used by every search thread.
+     * @param searchMode SearchThread.ALPHA_BETA or SearchThread.PVS
+     */
+    public void setSearchMode(int searchMode) {
+        if (searchMode != SearchThread.ALPHA_BETA && searchMode != SearchThread.PVS)
+            throw new IllegalArgumentException("Unknown search mode: " + searchMode);
+        this.searchMode = searchMode;
     }
-    
 
-    private boolean isCapture(Move move, Bitboard board) {
-        int d = board.index(move.getDestination());
-        long mask = 1L << d;
-        long opp = move.getPiece().getColor() == Color.WHITE ? board.blacks : board.whites;
-        return (mask & opp) != 0;
+    /**
+     * Replaces the transposition table with an empty one of the given size.
+     * @param megabytes the size of the table in megabytes
+     */
+    public void setHashSize(int megabytes) {
+        this.transpositionTable = new TranspositionTable(megabytes);
     }
 
-    public boolean isCritical(Move move, Bitboard board) {
-        boolean w = move.getPiece().getColor().equals(Color.WHITE);
-        int d = board.index(move.getDestination());
-        long mask = 1L << d;
-        return (mask & (w ? board.bKings : board.wKings)) != 0;
+    /**
+     * Replaces the pawn hash table shared by every evaluation with an empty one of the given size.
+     * @param megabytes the size of the table in megabytes
+     */
+    public void setPawnHashSize(int megabytes) {
+        Score.pawnTable = new PawnTable(megabytes);
+    }
+
+    /**
+     * Replaces the evaluation cache shared by every search thread with an empty one of the given size.
+     * @param megabytes the size of the cache in megabytes
+     */
+    public void setEvalHashSize(int megabytes) {
+        Score.evalCache = new EvalCache(megabytes);
     }
 
     public void shutdown() {
@@ -345,30 +273,4 @@ public class SmartPlayer extends Player
             executorService.shutdownNow();
         }
     }
-
-    private void updateHistory(Move move, int depth) {
-        int pieceType = indexPiece(move.getPiece()); // Convert piece to an index, e.g., Pawn -> 0, Knight -> 1, etc.
-        int destination = index(move.getDestination()); // Convert destination square to an index (0-63)
-        historyTable[pieceType][destination] += depth * depth; // Increment history score based on depth
-    }
-
-    private int indexPiece(Piece p) {
-        if (p instanceof Pawn)
-            return 0;
-        else if (p instanceof Knight)
-            return 1;
-        else if (p instanceof Bishop)
-            return 2;
-        else if (p instanceof Rook)
-            return 3;
-        else if (p instanceof Queen)
-            return 4;
-        else if (p instanceof King)
-            return 5;
-        throw new IllegalArgumentException("Invalid piece type given to indexPiece: " + p);
-    }
-
-    private int index(Location location) {
-        return location.getRow() * 8 + location.getCol();
-    }
-}
\ No newline at end of file
+}
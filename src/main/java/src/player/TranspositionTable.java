@@ -0,0 +1,128 @@
+package src.player;
+
+import java.util.Arrays;
+import src.board.Moves;
+
+/**
+ * A fixed-size transposition table shared by every search thread of a player. Entries are two
+ *      longs, the position key XORed with the data and the data itself, so a torn write from a
+ *      concurrent store is rejected on probe instead of needing a lock. The data packs
+ *      move (24 bits) | score (16) | depth (8) | bound (2) | age (6).
+ *      Every bucket holds a depth-preferred slot followed by an always-replace slot.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER = 2; // the score is at least the stored score
+    public static final int UPPER = 3; // the score is at most the stored score
+
+    private static final int SLOT_LONGS = 2;
+    private static final int BUCKET_LONGS = 2 * SLOT_LONGS;
+    private static final int BUCKET_BYTES = BUCKET_LONGS * Long.BYTES;
+    private static final int MAX_BUCKETS = 1 << 28;
+
+    private static final int SCORE_SHIFT = 24;
+    private static final int DEPTH_SHIFT = 40;
+    private static final int BOUND_SHIFT = 48;
+    private static final int AGE_SHIFT = 50;
+    private static final int AGE_MASK = 0x3F;
+
+    private final long[] table;
+    private final int bucketMask;
+    private int age;
+
+    /**
+     * Creates an empty table of at most the given size, rounded down to a power of two buckets.
+     * @param megabytes the size of the table in megabytes
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes <= 0)
+            throw new IllegalArgumentException("Hash size must be positive: " + megabytes);
+        int buckets = (int) Long.highestOneBit(Math.min((long) megabytes * 1024 * 1024 / BUCKET_BYTES, MAX_BUCKETS));
+        this.table = new long[buckets * BUCKET_LONGS];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * Starts a new search so that entries from earlier searches are replaced first.
+     */
+    public void newSearch() {
+        this.age = (this.age + 1) & AGE_MASK;
+    }
+
+    public void clear() {
+        Arrays.fill(this.table, 0L);
+        this.age = 0;
+    }
+
+    /**
+     * Looks up a position in the table.
+     * @param key the Zobrist key of the position
+     * @return type long the packed entry data, or 0 if the position is not stored
+     */
+    public long probe(long key) {
+        int index = this.index(key);
+        for (int slot = index; slot < index + BUCKET_LONGS; slot += SLOT_LONGS) {
+            long data = this.table[slot + 1];
+            if ((this.table[slot] ^ data) == key && data != 0L)
+                return data;
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores a search result. The depth-preferred slot is replaced by deeper or equal results, by
+     *      the same position and by entries of an older search; anything else goes to the
+     *      always-replace slot.
+     * @param key the Zobrist key of the position
+     * @param move the best packed move found, or Moves.NONE
+     * @param score the score of the position
+     * @param depth the remaining depth the position was searched to
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = this.index(key);
+        long preferred = this.table[index + 1];
+        if (move == Moves.NONE && (this.table[index] ^ preferred) == key)
+            move = move(preferred); // keep the known best move of the position
+
+        long data = (move & 0xFFFFFFL)
+            | ((long) (clamp(score) & 0xFFFF) << SCORE_SHIFT)
+            | ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) this.age << AGE_SHIFT);
+
+        int slot = index;
+        if (preferred != 0L && (this.table[index] ^ preferred) != key && depth(preferred) > depth && age(preferred) == this.age)
+            slot += SLOT_LONGS;
+        this.table[slot] = key ^ data;
+        this.table[slot + 1] = data;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    private static int clamp(int score) {
+        return Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, score));
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & this.bucketMask) * BUCKET_LONGS;
+    }
+}
@@ -0,0 +1,53 @@
+package src.board;
+
+import junit.framework.TestCase;
+
+/**
+ * The cached attack map against attacks looked up square by square.
+ */
+public class AttackMapTest extends TestCase
+{
+    public AttackMapTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * Every square of the map of both sides must agree with the attack table lookup.
+     */
+    public void testMatchesSquareLookup()
+    {
+        for (String fen : Perft.POSITIONS)
+        {
+            assertMatches(fen, new Bitboard().fromFEN(fen));
+        }
+    }
+
+    /**
+     * Making and unmaking moves must refill the map for the new placement.
+     */
+    public void testFollowsMoves()
+    {
+        Bitboard board = new Bitboard().fromFEN(Perft.POSITIONS[1]);
+        int[] moves = new int[Moves.MAX_MOVES];
+        int end = board.generateLegalMoves(moves, 0, false);
+        for (int i = 0; i < end; ++i)
+        {
+            board.attackMap();
+            board.makeMove(moves[i]);
+            assertMatches(Moves.toString(moves[i]), board);
+            board.unmakeMove(moves[i]);
+            assertMatches(Moves.toString(moves[i]) + " undone", board);
+        }
+    }
+
+    private static void assertMatches(String message, Bitboard board)
+    {
+        AttackMap map = board.attackMap();
+        for (int square = 0; square < 64; ++square)
+        {
+            assertEquals(message + " white " + square, board.isSquareAttacked(square, true), (map.attacks(Bitboard.WHITE) & (1L << square)) != 0L);
+            assertEquals(message + " black " + square, board.isSquareAttacked(square, false), (map.attacks(Bitboard.BLACK) & (1L << square)) != 0L);
+        }
+    }
+}
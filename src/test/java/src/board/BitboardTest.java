@@ -0,0 +1,128 @@
+package src.board;
+
+import junit.framework.TestCase;
+
+/**
+ * The piece-type, color and mailbox views of a position staying in agreement.
+ */
+public class BitboardTest extends TestCase
+{
+    public BitboardTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * Every square of the mailbox must name the piece found in the type and color boards, before
+     *      and after every move of the reference positions.
+     */
+    public void testMailboxFollowsMoves()
+    {
+        int[] moves = new int[Moves.MAX_MOVES];
+        for (String fen : Perft.POSITIONS)
+        {
+            Bitboard board = new Bitboard().fromFEN(fen);
+            assertConsistent(fen, board);
+            int end = board.generateLegalMoves(moves, 0, false);
+            for (int i = 0; i < end; ++i)
+            {
+                board.makeMove(moves[i]);
+                assertConsistent(fen + " " + Moves.toString(moves[i]), board);
+                board.unmakeMove(moves[i]);
+            }
+            assertEquals(fen, board.toFEN());
+        }
+    }
+
+    /**
+     * A copy must not share any state with the position it was taken from.
+     */
+    public void testCopyIsIndependent()
+    {
+        Bitboard board = new Bitboard().fromFEN(Perft.POSITIONS[1]);
+        String fen = board.toFEN();
+        Bitboard copy = board.copy();
+        int[] moves = new int[Moves.MAX_MOVES];
+        copy.generateLegalMoves(moves, 0, false);
+        copy.makeMove(moves[0]);
+
+        assertEquals(fen, board.toFEN());
+        assertConsistent(fen, board);
+        assertConsistent(copy.toFEN(), copy);
+    }
+
+    /**
+     * The running material, piece-square and phase totals must equal the ones of the same
+     *      position set up from scratch, and the start position is balanced at full phase.
+     */
+    public void testPieceSquareFollowsMoves()
+    {
+        Bitboard start = new Bitboard();
+        assertEquals(0, start.pieceSquareScore());
+        assertEquals(PieceSquare.MAX_PHASE, start.phase());
+
+        int[] moves = new int[Moves.MAX_MOVES];
+        for (String fen : Perft.POSITIONS)
+        {
+            Bitboard board = new Bitboard().fromFEN(fen);
+            int score = board.pieceSquareScore();
+            int end = board.generateLegalMoves(moves, 0, false);
+            for (int i = 0; i < end; ++i)
+            {
+                board.makeMove(moves[i]);
+                Bitboard fresh = new Bitboard().fromFEN(board.toFEN());
+                assertEquals(fen + " " + Moves.toString(moves[i]), fresh.pieceSquareScore(), board.pieceSquareScore());
+                assertEquals(fen + " " + Moves.toString(moves[i]), fresh.phase(), board.phase());
+                board.unmakeMove(moves[i]);
+            }
+            assertEquals(fen, score, board.pieceSquareScore());
+        }
+    }
+
+    /**
+     * A game longer than the undo stack must still be playable, and a search from its last
+     *      position must still be able to make and take back moves.
+     */
+    public void testPlayMoveKeepsNoUndo()
+    {
+        Bitboard board = new Bitboard().fromFEN("1n2k3/8/8/8/8/8/8/1N2K3 w - - 0 1");
+        int[] moves = new int[Moves.MAX_MOVES];
+        for (int ply = 0; ply < 3000; ++ply)
+        {
+            int end = board.generateLegalMoves(moves, 0, false);
+            int move = moves[0];
+            for (int i = 0; i < end; ++i)
+            {
+                if (Moves.piece(moves[i]) == Bitboard.KNIGHT)
+                    move = moves[i];
+            }
+            board.playMove(move);
+        }
+        String fen = board.toFEN();
+        int end = board.generateLegalMoves(moves, 0, false);
+        board.makeMove(moves[0]);
+        board.unmakeMove(moves[0]);
+        assertTrue(end > 0);
+        assertEquals(fen, board.toFEN());
+        assertConsistent(fen, board);
+    }
+
+    private static void assertConsistent(String message, Bitboard board)
+    {
+        for (int square = 0; square < 64; ++square)
+        {
+            long mask = 1L << square;
+            int piece = Moves.NONE;
+            for (int type = Bitboard.PAWN; type <= Bitboard.KING; ++type)
+            {
+                if ((board.pieces(type) & mask) != 0L)
+                    piece = type;
+            }
+            assertEquals(message + " square " + square, piece, board.pieceAt(square));
+            if (piece != Moves.NONE)
+                assertEquals(message + " color " + square, (board.whites & mask) != 0L ? Bitboard.WHITE : Bitboard.BLACK, board.colorAt(square));
+        }
+        assertEquals(message, 0L, board.whites & board.blacks);
+        assertEquals(message, board.whites | board.blacks, board.pawns | board.knights | board.bishops | board.rooks | board.queens | board.kings);
+    }
+}
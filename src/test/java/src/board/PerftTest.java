@@ -0,0 +1,75 @@
+package src.board;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+import junit.framework.TestCase;
+
+/**
+ * Move generator correctness against the published perft counts of the reference positions.
+ */
+public class PerftTest extends TestCase
+{
+    private static final long MAX_NODES = 100000L;
+
+    public PerftTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * Every reference position must match its known counts at every depth that stays small.
+     */
+    public void testReferencePositions()
+    {
+        for (int i = 0; i < Perft.POSITIONS.length; ++i)
+        {
+            Bitboard board = new Bitboard().fromFEN(Perft.POSITIONS[i]);
+            for (int depth = 1; depth <= Perft.NODES[i].length && Perft.NODES[i][depth - 1] <= MAX_NODES; ++depth)
+            {
+                assertEquals(Perft.POSITIONS[i] + " depth " + depth, Perft.NODES[i][depth - 1], board.perft(depth));
+            }
+        }
+    }
+
+    /**
+     * Splitting the root moves across threads and caching subtrees must not change any count.
+     */
+    public void testTableAndSplitMatch()
+    {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        PerftTable table = new PerftTable(1);
+        for (int i = 0; i < Perft.POSITIONS.length; ++i)
+        {
+            Bitboard board = new Bitboard().fromFEN(Perft.POSITIONS[i]);
+            assertEquals(Perft.POSITIONS[i], Perft.NODES[i][2], Perft.perft(board, 3, table, pool));
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * The divide counts add up to the perft count and counting leaves the position as it was.
+     */
+    public void testDivideSumsToPerft()
+    {
+        Bitboard board = new Bitboard().fromFEN(Perft.POSITIONS[1]);
+        String fen = board.toFEN();
+        long hash = board.hash();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long nodes = Perft.divide(board, 2, null, null, new PrintStream(out));
+        long sum = 0L;
+        for (String line : out.toString().split("\n"))
+        {
+            if (line.matches("[a-h][1-8][a-h][1-8][nbrq]?: \\d+"))
+            {
+                sum += Long.parseLong(line.substring(line.indexOf(' ') + 1));
+            }
+        }
+
+        assertEquals(Perft.NODES[1][1], nodes);
+        assertEquals(nodes, sum);
+        assertEquals(fen, board.toFEN());
+        assertEquals(hash, board.hash());
+    }
+}
@@ -0,0 +1,91 @@
+package src.eval;
+
+import junit.framework.TestCase;
+import src.board.Bitboard;
+import src.board.Moves;
+import src.board.Perft;
+
+/**
+ * Static evaluations read back from the shared evaluation cache.
+ */
+public class EvalCacheTest extends TestCase
+{
+    public EvalCacheTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * Scores of both signs must come back unchanged, and only for the key they were stored under.
+     */
+    public void testStoredScoreIsFound()
+    {
+        EvalCache cache = new EvalCache(1);
+        assertEquals(EvalCache.MISS, cache.probe(0x123456789ABCDEFL));
+        cache.store(0x123456789ABCDEFL, -1234);
+        assertEquals(-1234, cache.probe(0x123456789ABCDEFL));
+        cache.store(0x123456789ABCDEFL, 567);
+        assertEquals(567, cache.probe(0x123456789ABCDEFL));
+        assertEquals(EvalCache.MISS, cache.probe(0x723456789ABCDEFL));
+        assertEquals(4L, cache.getProbes());
+        assertEquals(2L, cache.getHits());
+    }
+
+    public void testSkipsScoresOutOfRange()
+    {
+        EvalCache cache = new EvalCache(1);
+        cache.store(99L << 32, 40000);
+        assertEquals(EvalCache.MISS, cache.probe(99L << 32));
+    }
+
+    /**
+     * Positions with the same pieces but another side to move or other castling rights must share
+     *      their entry.
+     */
+    public void testPlacementSharesEntry()
+    {
+        EvalCache previous = Score.evalCache;
+        try
+        {
+            Score.evalCache = new EvalCache(1);
+            int score = Score.bitboardScore(new Bitboard().fromFEN("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1"));
+            assertEquals(score, Score.bitboardScore(new Bitboard().fromFEN("r3k2r/8/8/8/8/8/8/R3K2R b - - 0 1")));
+            assertEquals(1L, Score.evalCache.getHits());
+        }
+        finally
+        {
+            Score.evalCache = previous;
+        }
+    }
+
+    /**
+     * A cached evaluation must equal the one computed with an empty cache, before and after
+     *      every move of the reference positions.
+     */
+    public void testCachedScoreMatchesEvaluation()
+    {
+        EvalCache previous = Score.evalCache;
+        int[] moves = new int[Moves.MAX_MOVES];
+        try
+        {
+            for (String fen : Perft.POSITIONS)
+            {
+                Bitboard board = new Bitboard().fromFEN(fen);
+                int end = board.generateLegalMoves(moves, 0, false);
+                for (int i = 0; i < end; ++i)
+                {
+                    board.makeMove(moves[i]);
+                    Score.evalCache = new EvalCache(1);
+                    int score = Score.bitboardScore(board);
+                    assertEquals(fen + " " + Moves.toString(moves[i]), score, Score.bitboardScore(board));
+                    assertEquals(1L, Score.evalCache.getHits());
+                    board.unmakeMove(moves[i]);
+                }
+            }
+        }
+        finally
+        {
+            Score.evalCache = previous;
+        }
+    }
+}
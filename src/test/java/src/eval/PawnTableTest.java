@@ -0,0 +1,98 @@
+package src.eval;
+
+import junit.framework.TestCase;
+import src.board.Bitboard;
+import src.board.Perft;
+
+/**
+ * Pawn structure evaluations read back from the pawn hash table.
+ */
+public class PawnTableTest extends TestCase
+{
+    public PawnTableTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * A stored structure must be found again with the same score, passed pawns and spans, and
+     *      counted as a hit.
+     */
+    public void testStoredEntryIsFound()
+    {
+        PawnTable table = new PawnTable(1);
+        PawnTable.Entry stored = new PawnTable.Entry();
+        stored.score = -35;
+        stored.passed[Bitboard.WHITE] = 1L << 12;
+        stored.passed[Bitboard.BLACK] = 1L << 50;
+        stored.attackSpans[Bitboard.WHITE] = 0x0A0A0A0AL;
+        stored.attackSpans[Bitboard.BLACK] = 0x0505050500000000L;
+
+        PawnTable.Entry found = new PawnTable.Entry();
+        assertFalse(table.probe(42L, found));
+        table.store(42L, stored);
+        assertTrue(table.probe(42L, found));
+        assertFalse(table.probe(43L, found));
+
+        assertEquals(stored.score, found.score);
+        assertEquals(stored.passed[Bitboard.WHITE], found.passed[Bitboard.WHITE]);
+        assertEquals(stored.passed[Bitboard.BLACK], found.passed[Bitboard.BLACK]);
+        assertEquals(stored.attackSpans[Bitboard.WHITE], found.attackSpans[Bitboard.WHITE]);
+        assertEquals(stored.attackSpans[Bitboard.BLACK], found.attackSpans[Bitboard.BLACK]);
+        assertEquals(3L, table.getProbes());
+        assertEquals(1L, table.getHits());
+        assertTrue(Math.abs(table.hitRate() - 1.0 / 3) < 1e-9);
+    }
+
+    /**
+     * Evaluating a structure a second time must hit the table and give the same result.
+     */
+    public void testEvaluationIsCached()
+    {
+        PawnTable previous = Score.pawnTable;
+        Score.pawnTable = new PawnTable(1);
+        try
+        {
+            for (String fen : Perft.POSITIONS)
+            {
+                Bitboard board = new Bitboard().fromFEN(fen);
+                long hits = Score.pawnTable.getHits();
+                int score = Score.scorePawnStructure(board);
+                long passed = Score.pawnEntry(board).passed[Bitboard.WHITE];
+                assertEquals(fen, hits + 1, Score.pawnTable.getHits());
+                assertEquals(fen, score, Score.scorePawnStructure(board));
+                assertEquals(fen, passed, Score.pawnEntry(board).passed[Bitboard.WHITE]);
+            }
+        }
+        finally
+        {
+            Score.pawnTable = previous;
+        }
+    }
+
+    /**
+     * A pawn with no enemy pawn ahead on its own or the adjacent files is passed, and the spans
+     *      reach every square in front of the pawns on the adjacent files.
+     */
+    public void testPassedPawnsAndSpans()
+    {
+        Bitboard board = new Bitboard().fromFEN("4k3/6p1/8/8/1P6/8/6P1/4K3 w - - 0 1");
+        PawnTable.Entry entry = Score.pawnEntry(board);
+        assertEquals(1L << 33, entry.passed[Bitboard.WHITE]); // b4
+        assertEquals(0L, entry.passed[Bitboard.BLACK]);
+        assertEquals(0x0000A0A0A0A0A0A0L | 0x0000000005050505L, entry.attackSpans[Bitboard.WHITE]);
+        assertEquals(0xA0A0A0A0A0A00000L, entry.attackSpans[Bitboard.BLACK]);
+    }
+
+    public void testRejectsNonPositiveSize()
+    {
+        try
+        {
+            new PawnTable(0);
+            fail("size 0 accepted");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+}
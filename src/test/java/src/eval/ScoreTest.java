@@ -0,0 +1,118 @@
+package src.eval;
+
+import junit.framework.TestCase;
+import src.board.Bitboard;
+import src.board.Moves;
+import src.board.Perft;
+
+/**
+ * The window-aware lazy evaluation against the full static evaluation.
+ */
+public class ScoreTest extends TestCase
+{
+    public ScoreTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * A window holding the score must give the exact score of the side to move, and a window
+     *      far from it must be answered with a bound on the right side of the window.
+     */
+    public void testLazyEvaluationRespectsWindow()
+    {
+        EvalCache previous = Score.evalCache;
+        int[] moves = new int[Moves.MAX_MOVES];
+        try
+        {
+            for (String fen : Perft.POSITIONS)
+            {
+                Bitboard board = new Bitboard().fromFEN(fen);
+                int end = board.generateLegalMoves(moves, 0, false);
+                for (int i = 0; i < end; ++i)
+                {
+                    board.makeMove(moves[i]);
+                    String message = fen + " " + Moves.toString(moves[i]);
+                    Score.evalCache = new EvalCache(1);
+                    int score = board.moveWhite ? Score.bitboardScore(board) : -Score.bitboardScore(board);
+
+                    Score.evalCache = new EvalCache(1);
+                    assertEquals(message, score, Score.evaluate(board, score - 1, score + 1));
+                    Score.evalCache = new EvalCache(1);
+                    assertTrue(message, Score.evaluate(board, score + 2000, score + 2100) <= score + 2000);
+                    Score.evalCache = new EvalCache(1);
+                    assertTrue(message, Score.evaluate(board, score - 2100, score - 2000) >= score - 2000);
+                    assertEquals(message, 0L, Score.evalCache.getHits());
+                    board.unmakeMove(moves[i]);
+                }
+            }
+        }
+        finally
+        {
+            Score.evalCache = previous;
+        }
+    }
+
+    /**
+     * No term may move the score by more than its margin, in the reference positions, the
+     *      positions after each of their moves and positions built to push single terms to the top.
+     */
+    public void testMarginsBoundEveryTerm()
+    {
+        String[] extremes = {
+            "k7/8/PPPPPPPP/8/8/8/8/7K b - - 0 1", // eight passed pawns
+            "7k/8/PPPPPPPP/8/7K/p1p1p1p1/p1p1p1p1/8 w - - 0 1", // against four isolated pairs
+            "7k/8/8/3Q4/2B1B3/2N1N3/8/R3K2R w - - 0 1", // every piece free against a bare king
+            "1k6/8/3N1N2/8/8/8/PPPPPPPP/R1B1KB1R w - - 0 1", // knights on outposts
+        };
+        int[] moves = new int[Moves.MAX_MOVES];
+        for (String fen : extremes)
+        {
+            assertWithinMargins(fen, new Bitboard().fromFEN(fen));
+        }
+        for (String fen : Perft.POSITIONS)
+        {
+            Bitboard board = new Bitboard().fromFEN(fen);
+            assertWithinMargins(fen, board);
+            int end = board.generateLegalMoves(moves, 0, false);
+            for (int i = 0; i < end; ++i)
+            {
+                board.makeMove(moves[i]);
+                assertWithinMargins(fen + " " + Moves.toString(moves[i]), board);
+                board.unmakeMove(moves[i]);
+            }
+        }
+    }
+
+    /**
+     * A side with more pieces of a type than it starts with can go past the margins, so its
+     *      evaluation must never be cut short.
+     */
+    public void testExtraPiecesEvaluatedInFull()
+    {
+        EvalCache previous = Score.evalCache;
+        try
+        {
+            Bitboard board = new Bitboard().fromFEN("QQQ4k/8/8/8/8/8/8/QQ5K w - - 0 1");
+            Score.evalCache = new EvalCache(1);
+            int score = Score.bitboardScore(board);
+            Score.evalCache = new EvalCache(1);
+            assertEquals(score, Score.evaluate(board, score + 2000, score + 2100));
+            Score.evalCache = new EvalCache(1);
+            assertEquals(score, Score.evaluate(board, score - 2100, score - 2000));
+        }
+        finally
+        {
+            Score.evalCache = previous;
+        }
+    }
+
+    private static void assertWithinMargins(String message, Bitboard board)
+    {
+        for (int term = 0; term < Score.TERMS; ++term)
+        {
+            int score = Score.scoreTerm(board, term);
+            assertTrue(message + " term " + term + " scored " + score, Math.abs(score) <= Score.termMargins[term]);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package src.player;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import junit.framework.TestCase;
+import src.board.Bitboard;
+import src.board.Moves;
+
+/**
+ * Allocation and correctness tests for picking moves through the MoveStack.
+ */
+public class MoveStackTest extends TestCase
+{
+    private static final int ITERATIONS = 20000;
+
+    public MoveStackTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * Picking a node's moves stage by stage must not allocate once the JIT has warmed up.
+     */
+    public void testNoAllocationPerNode()
+    {
+        Bitboard[] positions = positions();
+        MoveStack stack = new MoveStack();
+        MoveHistory history = new MoveHistory();
+
+        generateNodes(stack, positions, history); // warm up
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(id);
+        long overhead = bean.getThreadAllocatedBytes(id) - before;
+        before = bean.getThreadAllocatedBytes(id);
+        int moves = generateNodes(stack, positions, history);
+        long allocated = bean.getThreadAllocatedBytes(id) - before - overhead;
+
+        assertTrue(moves > 0);
+        assertEquals("bytes allocated over " + moves + " moves", 0L, allocated);
+    }
+
+    /**
+     * A child ply may be picked completely while its parent is halfway through its own moves.
+     */
+    public void testPliesDoNotOverlap()
+    {
+        Bitboard board = new Bitboard();
+        MoveStack stack = new MoveStack();
+        MoveHistory history = new MoveHistory();
+        stack.init(0, Moves.NONE, Moves.NONE, false);
+        int first = stack.next(board, 0, history);
+        Bitboard child = board.processMove(first);
+
+        stack.init(1, Moves.NONE, first, false);
+        int childMoves = 0;
+        while (stack.next(child, 1, history) != Moves.NONE)
+            ++childMoves;
+        Set<Integer> rest = new HashSet<Integer>();
+        for (int move = stack.next(board, 0, history); move != Moves.NONE; move = stack.next(board, 0, history))
+            rest.add(move);
+
+        assertEquals(20, childMoves);
+        assertEquals(19, rest.size());
+        assertFalse(rest.contains(first));
+        assertTrue(stack.start(1) > stack.start(0));
+    }
+
+    /**
+     * The picker hands out the hash move first and every legal move exactly once, whatever the
+     *      killers and counter move hold.
+     */
+    public void testPicksEveryLegalMoveOnce()
+    {
+        Bitboard board = new Bitboard().fromFEN("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        int[] legal = new int[Moves.MAX_MOVES];
+        int count = board.generateLegalMoves(legal, 0, false);
+        int hashMove = Moves.encode(52, 43, Bitboard.BISHOP, Moves.NONE, Moves.NONE, 0); // Be2-d3
+        int last = Moves.encode(12, 20, Bitboard.PAWN, Moves.NONE, Moves.NONE, 0);
+        int castle = Moves.encode(60, 62, Bitboard.KING, Moves.NONE, Moves.NONE, Moves.CASTLE);
+        MoveHistory history = new MoveHistory();
+        history.update(new int[] {castle}, 0, 0, 0, last, Bitboard.WHITE, 4);
+        history.update(new int[] {hashMove}, 0, 0, 0, last, Bitboard.WHITE, 4);
+
+        MoveStack stack = new MoveStack();
+        stack.init(0, hashMove, last, false);
+        List<Integer> picked = new ArrayList<Integer>();
+        for (int move = stack.next(board, 0, history); move != Moves.NONE; move = stack.next(board, 0, history))
+        {
+            assertEquals(move, stack.moves[stack.index(0)]);
+            picked.add(move);
+        }
+
+        Set<Integer> expected = new HashSet<Integer>();
+        for (int i = 0; i < count; ++i)
+            expected.add(legal[i]);
+        assertEquals(hashMove, (int) picked.get(0));
+        assertEquals(count, picked.size());
+        assertEquals(expected, new HashSet<Integer>(picked));
+    }
+
+    private int generateNodes(MoveStack stack, Bitboard[] positions, MoveHistory history)
+    {
+        int total = 0;
+        for (int i = 0; i < ITERATIONS; ++i)
+        {
+            for (Bitboard board : positions)
+            {
+                for (int ply = 0; ply < 2; ++ply)
+                {
+                    stack.init(ply, Moves.NONE, Moves.NONE, ply == 1);
+                    int first = Moves.NONE;
+                    for (int move = stack.next(board, ply, history); move != Moves.NONE; move = stack.next(board, ply, history))
+                    {
+                        if (first == Moves.NONE)
+                            first = move;
+                        else if (!Moves.isCapture(move) && total % 7 == 0)
+                            history.update(stack.moves, stack.start(ply), stack.index(ply), ply, Moves.NONE, board.moveWhite ? Bitboard.WHITE : Bitboard.BLACK, 1 + (i & 7));
+                        ++total;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    private Bitboard[] positions()
+    {
+        Bitboard start = new Bitboard();
+        int[] moves = new int[Moves.MAX_MOVES];
+        Bitboard[] positions = new Bitboard[4];
+        positions[0] = start;
+        Bitboard board = start;
+        for (int i = 1; i < positions.length; ++i)
+        {
+            // walk a few plies down the first generated line to get busier positions
+            int count = board.generateMoves(moves, 0, i % 2 == 1, false);
+            board = board.processMove(moves[count / 2]);
+            positions[i] = board;
+        }
+        return positions;
+    }
+}